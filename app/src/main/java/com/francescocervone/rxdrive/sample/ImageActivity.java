@@ -14,29 +14,25 @@ import com.bumptech.glide.load.engine.GlideException;
 import com.bumptech.glide.request.RequestListener;
 import com.bumptech.glide.request.RequestOptions;
 import com.bumptech.glide.request.target.Target;
-import com.francescocervone.rxdrive.ConnectionState;
+import com.bumptech.glide.signature.ObjectKey;
 import com.francescocervone.rxdrive.Progress;
 import com.francescocervone.rxdrive.RxDrive;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.drive.Drive;
 import com.google.android.gms.drive.DriveId;
 
-import org.apache.commons.io.IOUtils;
+import java.io.File;
 
-import java.io.IOException;
-import java.io.InputStream;
-
-import io.reactivex.Observable;
 import io.reactivex.Observer;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.CompositeDisposable;
 import io.reactivex.disposables.Disposable;
-import io.reactivex.schedulers.Schedulers;
 import uk.co.senab.photoview.PhotoViewAttacher;
 
 public class ImageActivity extends AppCompatActivity {
 
     public static final String IMAGE_EXTRA = "image";
+    private static final String IMAGE_FILE = "image";
     private TextView mTextView;
     private ImageView mImageView;
     private PhotoViewAttacher mAttacher;
@@ -65,8 +61,8 @@ public class ImageActivity extends AppCompatActivity {
     @Override
     protected void onStart() {
         super.onStart();
-        setupConnection();
         mRxDrive.connect();
+        openImage();
     }
 
     @Override
@@ -76,28 +72,22 @@ public class ImageActivity extends AppCompatActivity {
         mSubscriptions.clear();
     }
 
-    private void setupConnection() {
-        Disposable disposable = mRxDrive.connectionObservable()
-                .observeOn(Schedulers.io())
-                .filter(ConnectionState::isConnected)
-                .flatMapSingle(connectionState -> mRxDrive.open(mDriveId, getProgressObserver()))
+    private void openImage() {
+        File file = new File(getCacheDir(), IMAGE_FILE);
+        Disposable disposable = mRxDrive.download(mDriveId, file, getProgressObserver())
                 .observeOn(AndroidSchedulers.mainThread())
-                .onErrorResumeNext(Observable.empty())
-                .subscribe(this::loadImage);
+                .subscribe(() -> loadImage(file), Throwable::printStackTrace);
         mSubscriptions.add(disposable);
     }
 
-    private void loadImage(InputStream inputStream) {
-        try {
-            Glide.with(this)
-                    .load(IOUtils.toByteArray(inputStream))
-                    .apply(new RequestOptions()
-                            .fitCenter())
-                    .listener(getRequestListener())
-                    .into(mImageView);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    private void loadImage(File file) {
+        Glide.with(this)
+                .load(file)
+                .apply(new RequestOptions()
+                        .fitCenter()
+                        .signature(new ObjectKey(file.lastModified())))
+                .listener(getRequestListener())
+                .into(mImageView);
     }
 
     @NonNull
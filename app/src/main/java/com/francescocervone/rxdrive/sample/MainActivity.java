@@ -15,7 +15,6 @@ import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.drive.Drive;
 import com.google.android.gms.drive.DriveId;
 
-import io.reactivex.Observable;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.CompositeDisposable;
 import io.reactivex.disposables.Disposable;
@@ -98,11 +97,8 @@ public class MainActivity extends AppCompatActivity implements DriveFileAdapter.
     }
 
     private void list() {
-        mRxDrive.listChildren(mRxDrive.getAppFolder())
+        mRxDrive.listChildrenMetadata(mRxDrive.getAppFolder())
                 .subscribeOn(Schedulers.io())
-                .flatMapObservable(Observable::fromIterable)
-                .flatMapSingle(driveId -> mRxDrive.getMetadata(driveId.asDriveResource()))
-                .toList()
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(driveFiles -> mAdapter.setResources(driveFiles), this::log);
     }
@@ -0,0 +1,59 @@
+package com.francescocervone.rxdrive;
+
+import io.reactivex.Emitter;
+import io.reactivex.Observer;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Sums the Progress of several concurrent transfers into the Progress of a single operation
+ */
+class AggregateProgress {
+    private final ProgressTracker mTracker;
+    private final long mBytesExpected;
+    private long mBytesTransferred;
+
+    AggregateProgress(Emitter<Progress> emitter, long bytesExpected) {
+        mTracker = new ProgressTracker(emitter, bytesExpected, ProgressThrottle.DEFAULT);
+        mBytesExpected = bytesExpected;
+    }
+
+    /**
+     * @return an observer for the Progress of one more transfer
+     */
+    Observer<Progress> newTransfer() {
+        return new Observer<Progress>() {
+            private long mLastBytes;
+
+            @Override
+            public void onSubscribe(Disposable d) {
+
+            }
+
+            @Override
+            public void onNext(Progress progress) {
+                long bytes = progress.getBytesTransferred();
+                add(bytes - mLastBytes);
+                mLastBytes = bytes;
+            }
+
+            @Override
+            public void onError(Throwable e) {
+
+            }
+
+            @Override
+            public void onComplete() {
+
+            }
+        };
+    }
+
+    synchronized void onComplete() {
+        mTracker.onComplete(mBytesTransferred);
+    }
+
+    private synchronized void add(long bytes) {
+        mBytesTransferred += bytes;
+        mTracker.onProgress(mBytesTransferred, mBytesExpected);
+    }
+}
@@ -0,0 +1,73 @@
+package com.francescocervone.rxdrive;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+
+/**
+ * Counts the successes and the failures of a batch of operations
+ *
+ * @see #of(Flowable)
+ */
+public class BatchSummary {
+    private int mSuccessCount;
+    private List<Outcome<?>> mFailures;
+
+    private BatchSummary(int successCount, List<Outcome<?>> failures) {
+        mSuccessCount = successCount;
+        mFailures = failures;
+    }
+
+    private static class Counter {
+        private int mSuccessCount;
+        private final List<Outcome<?>> mFailures = new ArrayList<>();
+
+        void add(Outcome<?> outcome) {
+            if (outcome.isSuccess()) {
+                mSuccessCount++;
+            } else {
+                mFailures.add(outcome);
+            }
+        }
+
+        BatchSummary build() {
+            return new BatchSummary(mSuccessCount, Collections.unmodifiableList(mFailures));
+        }
+    }
+
+    /**
+     * Collects the Outcomes of a batch, e.g. {@code rxDrive.trash(resources).to(BatchSummary::of)}
+     *
+     * @param outcomes the Outcomes emitted by a batch operation
+     * @return a Single with the summary of the batch, emitted once all the Outcomes are received
+     */
+    public static Single<BatchSummary> of(Flowable<? extends Outcome<?>> outcomes) {
+        return outcomes
+                .collect(Counter::new, Counter::add)
+                .map(Counter::build);
+    }
+
+    /**
+     * @return the number of operations that succeeded
+     */
+    public int getSuccessCount() {
+        return mSuccessCount;
+    }
+
+    /**
+     * @return the number of operations that failed
+     */
+    public int getFailureCount() {
+        return mFailures.size();
+    }
+
+    /**
+     * @return the Outcomes of the operations that failed, in the order they were received
+     */
+    public List<Outcome<?>> getFailures() {
+        return mFailures;
+    }
+}
@@ -0,0 +1,188 @@
+package com.francescocervone.rxdrive;
+
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.drive.DriveId;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-memory cache for blocks of the contents of Drive files, used by
+ * {@link RxDrive#read(DriveId, long, int)} so that repeated reads of the same region do not
+ * open the file again. Each block is valid as long as the modified date and the MD5 checksum
+ * of its file do not change. It holds at most a fixed number of blocks, evicting the least
+ * recently used ones.
+ *
+ * @see RxDrive#setBlockCache(BlockCache)
+ */
+public class BlockCache {
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    private final int mBlockSize;
+    private final Map<Key, byte[]> mBlocks;
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+
+    private static class Key {
+        final DriveId mDriveId;
+        final String mRevision;
+        final long mIndex;
+
+        Key(DriveId driveId, String revision, long index) {
+            mDriveId = driveId;
+            mRevision = revision;
+            mIndex = index;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mIndex == key.mIndex &&
+                    mDriveId.equals(key.mDriveId) &&
+                    mRevision.equals(key.mRevision);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mDriveId.hashCode();
+            result = 31 * result + mRevision.hashCode();
+            return 31 * result + (int) (mIndex ^ (mIndex >>> 32));
+        }
+    }
+
+    /**
+     * @param maxBlocks the maximum number of blocks of {@link #DEFAULT_BLOCK_SIZE} bytes
+     */
+    public BlockCache(int maxBlocks) {
+        this(DEFAULT_BLOCK_SIZE, maxBlocks);
+    }
+
+    /**
+     * @param blockSize the number of bytes of each block
+     * @param maxBlocks the maximum number of blocks held by the cache
+     */
+    public BlockCache(int blockSize, final int maxBlocks) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize must be positive");
+        }
+        mBlockSize = blockSize;
+        mBlocks = new LinkedHashMap<Key, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, byte[]> eldest) {
+                return size() > maxBlocks;
+            }
+        };
+    }
+
+    /**
+     * Removes the blocks of a file
+     *
+     * @param driveId the file whose blocks will be removed
+     */
+    public synchronized void invalidate(DriveId driveId) {
+        Iterator<Key> iterator = mBlocks.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().mDriveId.equals(driveId)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all the blocks held by the cache
+     */
+    public synchronized void invalidateAll() {
+        mBlocks.clear();
+    }
+
+    /**
+     * @return the number of blocks currently held by the cache
+     */
+    public synchronized int size() {
+        return mBlocks.size();
+    }
+
+    /**
+     * @return the number of bytes of each block
+     */
+    public int blockSize() {
+        return mBlockSize;
+    }
+
+    /**
+     * @return the number of blocks found in the cache
+     */
+    public long hitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * @return the number of blocks that had to be read from the file
+     */
+    public long missCount() {
+        return mMissCount.get();
+    }
+
+    /**
+     * Reads a range of a file from the cached blocks, loading the missing ones from channel
+     *
+     * @param length  the number of bytes to read, which must not go past the end of the file
+     * @param channel the channel of the file, or null to read only cached blocks
+     * @return the bytes of the range, or null if a block is missing and channel is null
+     */
+    @Nullable
+    byte[] read(DriveId driveId,
+                String revision,
+                long offset,
+                int length,
+                @Nullable DriveChannel channel) throws IOException {
+        byte[] bytes = new byte[length];
+        int copied = 0;
+        // Counted only if the bytes are returned, so that a cache-only pass that finds a
+        // missing block does not count the hits again when the range is loaded
+        int hits = 0;
+        int misses = 0;
+        while (copied < length) {
+            long position = offset + copied;
+            long index = position / mBlockSize;
+            Key key = new Key(driveId, revision, index);
+            byte[] block;
+            synchronized (this) {
+                block = mBlocks.get(key);
+            }
+            if (block == null) {
+                if (channel == null) {
+                    return null;
+                }
+                misses++;
+                block = channel.read(index * mBlockSize, mBlockSize);
+                synchronized (this) {
+                    mBlocks.put(key, block);
+                }
+            } else {
+                hits++;
+            }
+            int start = (int) (position - index * mBlockSize);
+            int count = Math.min(length - copied, block.length - start);
+            if (count <= 0) {
+                // The file is shorter than expected
+                throw new IOException("Unexpected end of content at " + position);
+            }
+            System.arraycopy(block, start, bytes, copied, count);
+            copied += count;
+        }
+        mHitCount.addAndGet(hits);
+        mMissCount.addAndGet(misses);
+        return bytes;
+    }
+}
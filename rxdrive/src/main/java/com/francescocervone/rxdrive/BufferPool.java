@@ -0,0 +1,79 @@
+package com.francescocervone.rxdrive;
+
+import java.util.ArrayDeque;
+
+/**
+ * A small pool of byte arrays whose sizes are powers of two, between {@link #MIN_SIZE} and
+ * {@link #MAX_SIZE}. Buffers are recycled so that each transfer does not allocate garbage.
+ */
+class BufferPool {
+    static final int MIN_SIZE = 8 * 1024;
+    static final int MAX_SIZE = 256 * 1024;
+    static final int DEFAULT_SIZE = 64 * 1024;
+
+    private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_SIZE);
+    private static final int MAX_SHIFT = Integer.numberOfTrailingZeros(MAX_SIZE);
+    private static final int MAX_BUFFERS_PER_SIZE = 4;
+
+    private static final BufferPool INSTANCE = new BufferPool();
+
+    private final ArrayDeque<byte[]>[] mBuckets;
+
+    @SuppressWarnings("unchecked")
+    private BufferPool() {
+        mBuckets = new ArrayDeque[MAX_SHIFT - MIN_SHIFT + 1];
+        for (int i = 0; i < mBuckets.length; i++) {
+            mBuckets[i] = new ArrayDeque<>(MAX_BUFFERS_PER_SIZE);
+        }
+    }
+
+    static BufferPool get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param sizeHint the expected amount of bytes to transfer, or a negative value if unknown
+     * @return a buffer large enough for sizeHint within the pool bounds, or of
+     * {@link #DEFAULT_SIZE} if the size is unknown
+     */
+    byte[] acquire(long sizeHint) {
+        int size = sizeFor(sizeHint);
+        ArrayDeque<byte[]> bucket = mBuckets[bucketOf(size)];
+        synchronized (bucket) {
+            byte[] buffer = bucket.poll();
+            if (buffer != null) {
+                return buffer;
+            }
+        }
+        return new byte[size];
+    }
+
+    /**
+     * Gives a buffer obtained with {@link #acquire(long)} back to the pool
+     */
+    void release(byte[] buffer) {
+        ArrayDeque<byte[]> bucket = mBuckets[bucketOf(buffer.length)];
+        synchronized (bucket) {
+            if (bucket.size() < MAX_BUFFERS_PER_SIZE) {
+                bucket.push(buffer);
+            }
+        }
+    }
+
+    private static int sizeFor(long sizeHint) {
+        if (sizeHint < 0) {
+            return DEFAULT_SIZE;
+        }
+        if (sizeHint >= MAX_SIZE) {
+            return MAX_SIZE;
+        }
+        if (sizeHint <= MIN_SIZE) {
+            return MIN_SIZE;
+        }
+        return Integer.highestOneBit((int) sizeHint - 1) << 1;
+    }
+
+    private static int bucketOf(int size) {
+        return Integer.numberOfTrailingZeros(size) - MIN_SHIFT;
+    }
+}
@@ -0,0 +1,98 @@
+package com.francescocervone.rxdrive;
+
+import java.util.ArrayDeque;
+
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.functions.Cancellable;
+
+/**
+ * Limits the number of calls running at the same time. The calls subscribed while all the
+ * permits are taken wait in a queue, and start in order as the running ones terminate or are
+ * disposed.
+ */
+class CallLimiter {
+    private final int mMaxRunning;
+    private final ArrayDeque<Pending<?>> mWaiting = new ArrayDeque<>();
+    private int mRunning;
+
+    private final class Pending<T> implements Runnable, Cancellable {
+        final Single<T> mCall;
+        final SingleEmitter<T> mEmitter;
+        final CompositeDisposable mUpstream = new CompositeDisposable();
+
+        Pending(Single<T> call, SingleEmitter<T> emitter) {
+            mCall = call;
+            mEmitter = emitter;
+        }
+
+        /**
+         * Subscribes to the call, once it holds a permit
+         */
+        @Override
+        public void run() {
+            mUpstream.add(mCall
+                    .doFinally(CallLimiter.this::release)
+                    .subscribe(mEmitter::onSuccess, mEmitter::tryOnError));
+        }
+
+        @Override
+        public void cancel() {
+            if (!dequeue(this)) {
+                mUpstream.dispose();
+            }
+        }
+    }
+
+    /**
+     * @param maxRunning the maximum number of calls running at the same time
+     */
+    CallLimiter(int maxRunning) {
+        mMaxRunning = maxRunning;
+    }
+
+    <T> Single<T> limit(final Single<T> call) {
+        return Single.create(emitter -> {
+            Pending<T> pending = new Pending<>(call, emitter);
+            emitter.setCancellable(pending);
+            boolean start;
+            synchronized (mWaiting) {
+                start = mRunning < mMaxRunning;
+                if (start) {
+                    mRunning++;
+                } else {
+                    mWaiting.add(pending);
+                }
+            }
+            if (start) {
+                pending.run();
+            }
+        });
+    }
+
+    /**
+     * @return false if the call is not waiting anymore, because it has been started
+     */
+    private boolean dequeue(Pending<?> pending) {
+        synchronized (mWaiting) {
+            return mWaiting.remove(pending);
+        }
+    }
+
+    /**
+     * Passes the permit of a terminated call to the first waiting call
+     */
+    private void release() {
+        Pending<?> next;
+        synchronized (mWaiting) {
+            next = mWaiting.poll();
+            if (next == null) {
+                mRunning--;
+            }
+        }
+        if (next != null) {
+            next.run();
+        }
+    }
+}
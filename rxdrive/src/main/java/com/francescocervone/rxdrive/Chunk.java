@@ -0,0 +1,49 @@
+package com.francescocervone.rxdrive;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A chunk of the content of a Drive file, held in a buffer taken from a pool. Once the chunk
+ * has been processed, {@link #release()} gives the buffer back to the pool, so that the next
+ * chunks reuse it; a chunk that is never released is simply garbage collected.
+ *
+ * @see RxDrive#openChunks(com.google.android.gms.drive.DriveId, int)
+ */
+public class Chunk {
+    private final byte[] mArray;
+    private final ByteBuffer mBuffer;
+    private final AtomicBoolean mReleased = new AtomicBoolean();
+
+    Chunk(byte[] array, int length) {
+        mArray = array;
+        mBuffer = ByteBuffer.wrap(array, 0, length).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return a read-only view of the bytes of the chunk, valid until the chunk is released
+     * @throws IllegalStateException if the chunk has been released
+     */
+    public ByteBuffer getBuffer() {
+        if (mReleased.get()) {
+            throw new IllegalStateException("The chunk has been released");
+        }
+        return mBuffer.duplicate();
+    }
+
+    /**
+     * @return the number of bytes of the chunk
+     */
+    public int size() {
+        return mBuffer.limit();
+    }
+
+    /**
+     * Gives the buffer back to the pool. Calling it more than once has no effect.
+     */
+    public void release() {
+        if (mReleased.compareAndSet(false, true)) {
+            BufferPool.get().release(mArray);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.francescocervone.rxdrive;
+
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.drive.events.CompletionEvent;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.reactivex.Single;
+import io.reactivex.subjects.AsyncSubject;
+
+/**
+ * Routes the CompletionEvents received by {@link RxDriveEventService}, or forwarded to
+ * {@link RxDriveEventService#dispatch(CompletionEvent)}, to the uploads waiting for them,
+ * matching their tracking tags.
+ */
+class CompletionEvents {
+    /**
+     * The prefix of the tracking tags created by RxDrive, which tells its events apart from
+     * the ones of the app
+     */
+    private static final String TRACKING_TAG_PREFIX = "rxdrive:";
+
+    private static final Map<String, AsyncSubject<CompletionEvent>> sPending = new ConcurrentHashMap<>();
+
+    private CompletionEvents() {
+
+    }
+
+    /**
+     * @return a new tracking tag, owned by RxDrive
+     */
+    static String newTrackingTag() {
+        return TRACKING_TAG_PREFIX + UUID.randomUUID();
+    }
+
+    /**
+     * Starts waiting for the CompletionEvent with a tracking tag. It must be called before the
+     * upload is committed, so that no event can be missed.
+     *
+     * @return a Single with the successful CompletionEvent, or an RxDriveException if the
+     * commit failed on the server
+     */
+    static Single<CompletionEvent> register(String trackingTag) {
+        AsyncSubject<CompletionEvent> subject = AsyncSubject.create();
+        sPending.put(trackingTag, subject);
+        return subject.singleOrError()
+                .flatMap(event -> {
+                    if (event.getStatus() == CompletionEvent.STATUS_SUCCESS) {
+                        return Single.just(event);
+                    }
+                    return Single.error(new RxDriveException(statusOf(event)));
+                });
+    }
+
+    static void unregister(String trackingTag) {
+        sPending.remove(trackingTag);
+    }
+
+    /**
+     * Delivers an event to the uploads waiting for it and dismisses it, if it has a tracking
+     * tag created by RxDrive. Even if nobody is waiting anymore, e.g. after the upload timed
+     * out, the event is dismissed so that it is not delivered again.
+     *
+     * @return true if the event belongs to RxDrive, false if it must be handled by the app
+     */
+    static boolean dispatch(CompletionEvent event) {
+        List<String> trackingTags = event.getTrackingTags();
+        if (trackingTags == null) {
+            return false;
+        }
+        boolean owned = false;
+        for (String trackingTag : trackingTags) {
+            if (!trackingTag.startsWith(TRACKING_TAG_PREFIX)) {
+                continue;
+            }
+            owned = true;
+            AsyncSubject<CompletionEvent> subject = sPending.remove(trackingTag);
+            if (subject != null) {
+                subject.onNext(event);
+                subject.onComplete();
+            }
+        }
+        if (owned) {
+            event.dismiss();
+        }
+        return owned;
+    }
+
+    private static Status statusOf(CompletionEvent event) {
+        switch (event.getStatus()) {
+            case CompletionEvent.STATUS_CONFLICT:
+                return new Status(CommonStatusCodes.ERROR, "Conflict while committing to the server");
+            case CompletionEvent.STATUS_CANCELED:
+                return new Status(CommonStatusCodes.CANCELED, "Commit to the server canceled");
+            default:
+                return new Status(CommonStatusCodes.ERROR, "Commit to the server failed");
+        }
+    }
+}
@@ -11,7 +11,8 @@ public class ConnectionState {
         CONNECTED,
         SUSPENDED,
         FAILED,
-        UNABLE_TO_RESOLVE
+        UNABLE_TO_RESOLVE,
+        DISCONNECTED
     }
 
     public enum ConnectionSuspendedCause {
@@ -62,6 +63,12 @@ public class ConnectionState {
                 .build();
     }
 
+    static ConnectionState disconnected() {
+        return new Builder()
+                .state(State.DISCONNECTED)
+                .build();
+    }
+
     /**
      * @return true if GoogleApiClient is connected
      */
@@ -91,6 +98,13 @@ public class ConnectionState {
         return mState == State.UNABLE_TO_RESOLVE;
     }
 
+    /**
+     * @return true if GoogleApiClient has been disconnected with {@link RxDrive#disconnect()}
+     */
+    public boolean isDisconnected() {
+        return mState == State.DISCONNECTED;
+    }
+
     /**
      * This method should be called when state is connected
      *
@@ -0,0 +1,245 @@
+package com.francescocervone.rxdrive;
+
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.drive.DriveId;
+import com.google.android.gms.drive.Metadata;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A disk cache for the contents of Drive files. Each entry is keyed by the DriveId of the file
+ * and is valid as long as the modified date and the MD5 checksum of the file do not change.
+ * When the cache grows over its size budget, the least recently used entries are evicted.
+ *
+ * @see RxDrive#setContentCache(ContentCache)
+ */
+public class ContentCache {
+    private static final String TEMP_PREFIX = "tmp";
+    private static final char SEPARATOR = '.';
+
+    private final File mDirectory;
+    private final long mMaxSize;
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long mSize;
+
+    private static class Entry {
+        /**
+         * The hash of the revision of the content, which is also the extension of the file
+         */
+        final String mRevision;
+        final File mFile;
+        final long mLength;
+
+        Entry(String revision, File file, long length) {
+            mRevision = revision;
+            mFile = file;
+            mLength = length;
+        }
+    }
+
+    /**
+     * @param directory the directory where the contents are stored. It should be used only by
+     *                  this cache, e.g. a subdirectory of {@link android.content.Context#getCacheDir()}
+     * @param maxSize   the maximum number of bytes stored in the directory
+     */
+    public ContentCache(File directory, long maxSize) {
+        mDirectory = directory;
+        mMaxSize = maxSize;
+        load();
+    }
+
+    /**
+     * @return the number of bytes currently stored
+     */
+    public synchronized long size() {
+        return mSize;
+    }
+
+    /**
+     * @return the maximum number of bytes stored
+     */
+    public long maxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Removes the cached content of a file
+     *
+     * @param driveId the file whose content will be removed
+     */
+    public synchronized void remove(DriveId driveId) {
+        Entry entry = mEntries.remove(keyOf(driveId));
+        if (entry != null) {
+            delete(entry);
+        }
+    }
+
+    /**
+     * Removes all the cached contents
+     */
+    public synchronized void clear() {
+        for (Entry entry : mEntries.values()) {
+            delete(entry);
+        }
+        mEntries.clear();
+    }
+
+    /**
+     * @return the cached content of the file if it is still valid for its metadata, null
+     * otherwise
+     */
+    @Nullable
+    InputStream get(DriveId driveId, Metadata metadata) {
+        String revision = revisionOf(metadata);
+        if (revision == null) {
+            return null;
+        }
+        File file;
+        synchronized (this) {
+            Entry entry = mEntries.get(keyOf(driveId));
+            if (entry == null || !entry.mRevision.equals(hash(revision))) {
+                return null;
+            }
+            file = entry.mFile;
+        }
+        try {
+            //noinspection ResultOfMethodCallIgnored
+            file.setLastModified(System.currentTimeMillis());
+            return new FileInputStream(file);
+        } catch (FileNotFoundException e) {
+            remove(driveId);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the content of a file, if it fits in the cache, and closes content
+     *
+     * @return an InputStream reading the cached copy, or content itself if it cannot be cached
+     */
+    InputStream put(DriveId driveId, Metadata metadata, InputStream content) throws IOException {
+        String revision = revisionOf(metadata);
+        if (revision == null || metadata.getFileSize() > mMaxSize) {
+            return content;
+        }
+        String key = keyOf(driveId);
+
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            return content;
+        }
+        File temp = File.createTempFile(TEMP_PREFIX, null, mDirectory);
+        try {
+            OutputStream outputStream = new FileOutputStream(temp);
+            try {
+                IOUtils.copy(content, outputStream, metadata.getFileSize(), null);
+            } finally {
+                outputStream.close();
+            }
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            throw e;
+        } finally {
+            content.close();
+        }
+
+        String revisionHash = hash(revision);
+        File file = new File(mDirectory, key + SEPARATOR + revisionHash);
+        synchronized (this) {
+            Entry previous = mEntries.remove(key);
+            if (previous != null) {
+                delete(previous);
+            }
+            if (!temp.renameTo(file)) {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+                throw new IOException("Unable to store " + file);
+            }
+            Entry entry = new Entry(revisionHash, file, file.length());
+            mEntries.put(key, entry);
+            mSize += entry.mLength;
+            trim();
+        }
+        return new FileInputStream(file);
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+        while (mSize > mMaxSize && iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            iterator.remove();
+            delete(entry);
+        }
+    }
+
+    private void delete(Entry entry) {
+        mSize -= entry.mLength;
+        //noinspection ResultOfMethodCallIgnored
+        entry.mFile.delete();
+    }
+
+    /**
+     * Rebuilds the index from the files of the directory, oldest first, so that the least
+     * recently used order survives process restarts
+     */
+    private synchronized void load() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> {
+            long difference = a.lastModified() - b.lastModified();
+            return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+        });
+        for (File file : files) {
+            String name = file.getName();
+            int separator = name.indexOf(SEPARATOR);
+            if (name.startsWith(TEMP_PREFIX) || separator < 0) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+                continue;
+            }
+            Entry entry = new Entry(name.substring(separator + 1), file, file.length());
+            Entry previous = mEntries.put(name.substring(0, separator), entry);
+            if (previous != null) {
+                delete(previous);
+            }
+            mSize += entry.mLength;
+        }
+        trim();
+    }
+
+    @Nullable
+    static String revisionOf(Metadata metadata) {
+        String md5 = metadata.getMd5Checksum();
+        if (md5 == null || metadata.getModifiedDate() == null) {
+            return null;
+        }
+        return metadata.getModifiedDate().getTime() + ":" + md5;
+    }
+
+    private static String keyOf(DriveId driveId) {
+        String resourceId = driveId.getResourceId();
+        return hash(resourceId != null ? resourceId : driveId.encodeToString());
+    }
+
+    private static String hash(String s) {
+        try {
+            return IOUtils.hex(IOUtils.md5Digest().digest(s.getBytes("UTF-8")));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
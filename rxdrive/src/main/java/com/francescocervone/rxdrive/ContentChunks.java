@@ -0,0 +1,56 @@
+package com.francescocervone.rxdrive;
+
+import com.google.android.gms.drive.DriveContents;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import io.reactivex.Emitter;
+
+/**
+ * The state of {@link RxDrive#openChunks(com.google.android.gms.drive.DriveId, int)}: it reads
+ * the contents sequentially, each chunk into its own buffer taken from the {@link BufferPool}
+ */
+class ContentChunks {
+    private final DriveContents mContents;
+    private final FileChannel mChannel;
+    private final int mChunkSize;
+
+    ContentChunks(DriveContents contents, int chunkSize) {
+        mContents = contents;
+        // The descriptor is owned by the contents, which close it when discarded
+        mChannel = new FileInputStream(contents.getParcelFileDescriptor().getFileDescriptor())
+                .getChannel();
+        mChunkSize = Math.min(chunkSize, BufferPool.MAX_SIZE);
+    }
+
+    DriveContents getContents() {
+        return mContents;
+    }
+
+    /**
+     * Emits the next chunk, which is full unless it is the last one, or completes at the end
+     * of the contents
+     */
+    void next(Emitter<Chunk> emitter) throws IOException {
+        BufferPool pool = BufferPool.get();
+        byte[] array = pool.acquire(mChunkSize);
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(array, 0, mChunkSize);
+            while (buffer.hasRemaining() && mChannel.read(buffer) >= 0) {
+                // Fills the buffer until the contents end
+            }
+            if (buffer.position() > 0) {
+                emitter.onNext(new Chunk(array, buffer.position()));
+                return;
+            }
+        } catch (IOException e) {
+            pool.release(array);
+            throw e;
+        }
+        pool.release(array);
+        emitter.onComplete();
+    }
+}
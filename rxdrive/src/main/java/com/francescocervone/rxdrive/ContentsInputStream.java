@@ -0,0 +1,30 @@
+package com.francescocervone.rxdrive;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The InputStream of a DriveContents, which discards the contents when it is closed
+ */
+class ContentsInputStream extends FilterInputStream {
+    private final Runnable mDiscard;
+    private final AtomicBoolean mClosed = new AtomicBoolean();
+
+    ContentsInputStream(InputStream inputStream, Runnable discard) {
+        super(inputStream);
+        mDiscard = discard;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (mClosed.compareAndSet(false, true)) {
+            try {
+                super.close();
+            } finally {
+                mDiscard.run();
+            }
+        }
+    }
+}
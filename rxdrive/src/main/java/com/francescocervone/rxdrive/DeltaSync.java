@@ -0,0 +1,273 @@
+package com.francescocervone.rxdrive;
+
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.drive.DriveFolder;
+import com.google.android.gms.drive.Metadata;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Brings a local directory and a Drive folder up to date with each other, transferring only
+ * the files that changed since the last run. The changes are detected comparing both copies
+ * with a {@link SyncManifest}: a local file changed if its size or modification time differ
+ * and its MD5 checksum differs too, a Drive file changed if its modified date differs and its
+ * MD5 checksum differs too.
+ * <p>
+ * When both copies changed, the local copy wins. A file deleted locally is trashed on Drive,
+ * unless the Drive copy changed, while a file missing on Drive is uploaded again.
+ * <p>
+ * The local files are listed and hashed on the io scheduler, never on the bounded RxDrive
+ * schedulers that deliver the results of the Drive calls.
+ */
+class DeltaSync {
+    /**
+     * The prefix of the temporary files where the downloads are written before replacing the
+     * local copies, so that an interrupted download never leaves a truncated file
+     */
+    private static final String TEMP_PREFIX = ".rxdrive-sync-";
+
+    private final RxDrive mRxDrive;
+    private final File mDirectory;
+    private final DriveFolder mFolder;
+    private final SyncManifest mManifest;
+    private final int mMaxConcurrency;
+    private final Map<String, Single<DriveFolder>> mFolders = new HashMap<>();
+
+    DeltaSync(RxDrive rxDrive, File directory, DriveFolder folder, File manifestFile, int maxConcurrency) {
+        mRxDrive = rxDrive;
+        mDirectory = directory;
+        mFolder = folder;
+        mManifest = new SyncManifest(manifestFile);
+        mMaxConcurrency = maxConcurrency;
+    }
+
+    Flowable<SyncAction> run() {
+        return Completable.fromAction(mManifest::load)
+                .subscribeOn(Schedulers.io())
+                .andThen(mRxDrive.walk(mFolder, new WalkOptions.Builder()
+                        .filter(metadata -> !metadata.isTrashed() &&
+                                (metadata.isFolder() || FolderMirror.hasContent(metadata)))
+                        .maxConcurrency(mMaxConcurrency)
+                        .build())
+                        .toList())
+                .observeOn(Schedulers.io())
+                .flatMapPublisher(entries -> {
+                    // Local paths are unique, even for the Drive files with the same title
+                    Map<WalkEntry, String> localPaths = LocalPaths.of(entries);
+                    Map<String, Metadata> remote = new HashMap<>();
+                    synchronized (mFolders) {
+                        mFolders.clear();
+                        mFolders.put("", Single.just(mFolder));
+                        for (WalkEntry entry : entries) {
+                            Metadata metadata = entry.getMetadata();
+                            if (metadata.isFolder()) {
+                                mFolders.put(localPaths.get(entry), Single.just(metadata.getDriveId().asDriveFolder()));
+                            } else {
+                                remote.put(localPaths.get(entry), metadata);
+                            }
+                        }
+                    }
+                    Map<String, File> local = new HashMap<>();
+                    if (mDirectory.exists()) {
+                        list(mDirectory, "", local);
+                    }
+
+                    Set<String> paths = new LinkedHashSet<>(local.keySet());
+                    paths.addAll(remote.keySet());
+                    for (String path : mManifest.paths()) {
+                        paths.add(path);
+                    }
+                    return Flowable.fromIterable(paths)
+                            .flatMapMaybe(path -> sync(path, local.get(path), remote.get(path)), true, mMaxConcurrency);
+                })
+                .onErrorResumeNext((Throwable throwable) ->
+                        saveManifest().andThen(Flowable.<SyncAction>error(throwable)))
+                .concatWith(saveManifest().toFlowable());
+    }
+
+    private Completable saveManifest() {
+        return Completable.fromAction(mManifest::save).subscribeOn(Schedulers.io());
+    }
+
+    /**
+     * Compares the two copies of a file with the manifest and applies the needed action
+     */
+    private Maybe<SyncAction> sync(final String path, @Nullable final File file, @Nullable final Metadata metadata) {
+        return Maybe.defer(() -> {
+            SyncManifest.Entry entry = mManifest.get(path);
+            if (file == null && metadata == null) {
+                mManifest.remove(path);
+                return Maybe.empty();
+            }
+            if (file == null) {
+                if (entry != null && !remoteChanged(entry, metadata)) {
+                    return trash(path, metadata);
+                }
+                return download(path, metadata);
+            }
+            if (metadata == null) {
+                return upload(path, file);
+            }
+
+            String md5 = localMd5(entry, file);
+            boolean localChanged = entry == null || !md5.equals(entry.mMd5);
+            boolean remoteChanged = entry == null || remoteChanged(entry, metadata);
+            if (md5.equals(metadata.getMd5Checksum())) {
+                mManifest.put(path, entryOf(file, md5, metadata));
+                return Maybe.empty();
+            }
+            if (localChanged) {
+                return update(path, file, md5, metadata);
+            }
+            if (remoteChanged) {
+                return download(path, metadata);
+            }
+            return Maybe.empty();
+        }).subscribeOn(Schedulers.io());
+    }
+
+    private Maybe<SyncAction> upload(final String path, final File file) {
+        int separator = path.lastIndexOf(WalkEntry.SEPARATOR);
+        return folder(separator < 0 ? "" : path.substring(0, separator))
+                .flatMap(folder -> Single.using(
+                        () -> new FileInputStream(file),
+                        inputStream -> mRxDrive.createFile(folder, inputStream, file.getName(), FolderMirror.mimeTypeOf(file)),
+                        InputStream::close))
+                .flatMap(driveId -> mRxDrive.getMetadata(driveId.asDriveResource()))
+                .observeOn(Schedulers.io())
+                .map(metadata -> {
+                    mManifest.put(path, entryOf(file, IOUtils.md5(file), metadata));
+                    return new SyncAction(SyncAction.Type.UPLOAD, path);
+                })
+                .toMaybe();
+    }
+
+    private Maybe<SyncAction> update(final String path, final File file, final String md5, Metadata metadata) {
+        return Single.using(
+                () -> new FileInputStream(file),
+                inputStream -> mRxDrive.updateFileContent(metadata.getDriveId().asDriveFile(), inputStream),
+                InputStream::close)
+                .flatMap(driveFile -> mRxDrive.getMetadata(driveFile))
+                .map(updated -> {
+                    mManifest.put(path, entryOf(file, md5, updated));
+                    return new SyncAction(SyncAction.Type.UPDATE, path);
+                })
+                .toMaybe();
+    }
+
+    /**
+     * Downloads a file to a temporary file next to it, which replaces the local copy only once
+     * the download is complete
+     */
+    private Maybe<SyncAction> download(final String path, final Metadata metadata) {
+        return Single.fromCallable(() -> {
+            File file = LocalPaths.resolve(mDirectory, path);
+            File parent = file.getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Unable to create " + parent);
+            }
+            return file;
+        }).flatMapMaybe(file -> Single.using(
+                () -> File.createTempFile(TEMP_PREFIX, null, file.getParentFile()),
+                temp -> mRxDrive.download(metadata.getDriveId(), temp)
+                        .andThen(Single.fromCallable(() -> {
+                            if (!temp.renameTo(file)) {
+                                throw new IOException("Unable to replace " + file);
+                            }
+                            mManifest.put(path, entryOf(file, IOUtils.md5(file), metadata));
+                            return new SyncAction(SyncAction.Type.DOWNLOAD, path);
+                        }).subscribeOn(Schedulers.io())),
+                // Deletes the temporary file if it has not been renamed
+                File::delete)
+                .toMaybe());
+    }
+
+    private Maybe<SyncAction> trash(final String path, Metadata metadata) {
+        return mRxDrive.trash(metadata.getDriveId().asDriveResource())
+                .andThen(Maybe.fromCallable(() -> {
+                    mManifest.remove(path);
+                    return new SyncAction(SyncAction.Type.TRASH, path);
+                }));
+    }
+
+    /**
+     * @return the folder of a path, creating it and its parents on Drive if needed. Concurrent
+     * uploads to the same new folder create it only once.
+     */
+    private Single<DriveFolder> folder(String path) {
+        synchronized (mFolders) {
+            Single<DriveFolder> folder = mFolders.get(path);
+            if (folder == null) {
+                int separator = path.lastIndexOf(WalkEntry.SEPARATOR);
+                String title = path.substring(separator + 1);
+                folder = folder(separator < 0 ? "" : path.substring(0, separator))
+                        .flatMap(parent -> mRxDrive.createFolder(parent, title))
+                        .cache();
+                mFolders.put(path, folder);
+            }
+            return folder;
+        }
+    }
+
+    /**
+     * @return the MD5 checksum of the file, read from the manifest if the size and the
+     * modification time of the file did not change
+     */
+    private static String localMd5(@Nullable SyncManifest.Entry entry, File file) throws IOException {
+        if (entry != null && entry.mSize == file.length() && entry.mModified == file.lastModified()) {
+            return entry.mMd5;
+        }
+        return IOUtils.md5(file);
+    }
+
+    private static boolean remoteChanged(SyncManifest.Entry entry, Metadata metadata) {
+        if (metadata.getModifiedDate() != null && metadata.getModifiedDate().getTime() == entry.mRemoteModified) {
+            return false;
+        }
+        String md5 = metadata.getMd5Checksum();
+        return md5 != null && !md5.equals(entry.mMd5);
+    }
+
+    private static SyncManifest.Entry entryOf(File file, String md5, Metadata metadata) {
+        return new SyncManifest.Entry(
+                file.length(),
+                file.lastModified(),
+                md5,
+                metadata.getModifiedDate() != null ? metadata.getModifiedDate().getTime() : 0);
+    }
+
+    private static void list(File directory, String path, Map<String, File> files) throws IOException {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            throw new IOException("Unable to list " + directory);
+        }
+        for (File child : children) {
+            if (child.getName().startsWith(TEMP_PREFIX)) {
+                // Left by an interrupted download
+                //noinspection ResultOfMethodCallIgnored
+                child.delete();
+                continue;
+            }
+            String childPath = path.isEmpty() ? child.getName() : path + WalkEntry.SEPARATOR + child.getName();
+            if (child.isDirectory()) {
+                list(child, childPath, files);
+            } else {
+                files.put(childPath, child);
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.francescocervone.rxdrive;
+
+import android.os.ParcelFileDescriptor;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A seekable view of the content of a Drive file, read through the ParcelFileDescriptor of
+ * its DriveContents. Bytes can be read sequentially from the current position, or at any
+ * position without moving it. Closing the channel discards the DriveContents.
+ *
+ * @see RxDrive#openChannel(com.google.android.gms.drive.DriveId)
+ */
+public class DriveChannel implements ReadableByteChannel {
+    private final FileChannel mChannel;
+    private final Runnable mRelease;
+    private final AtomicBoolean mOpen = new AtomicBoolean(true);
+    private long mPosition;
+
+    /**
+     * @param fileDescriptor the descriptor of the contents, which keep its ownership
+     * @param release        discards the contents
+     */
+    DriveChannel(ParcelFileDescriptor fileDescriptor, Runnable release) {
+        mChannel = new FileInputStream(fileDescriptor.getFileDescriptor()).getChannel();
+        mRelease = release;
+    }
+
+    /**
+     * Reads bytes from the current position, then moves the position forward
+     *
+     * @return the number of bytes read, or -1 at the end of the content
+     */
+    @Override
+    public synchronized int read(ByteBuffer destination) throws IOException {
+        int read = read(destination, mPosition);
+        if (read > 0) {
+            mPosition += read;
+        }
+        return read;
+    }
+
+    /**
+     * Reads bytes from a position, without moving the current position
+     *
+     * @return the number of bytes read, or -1 if position is at the end of the content
+     */
+    public int read(ByteBuffer destination, long position) throws IOException {
+        ensureOpen();
+        return mChannel.read(destination, position);
+    }
+
+    /**
+     * Reads a range of bytes, without moving the current position
+     *
+     * @param position the offset of the first byte
+     * @param length   the number of bytes to read
+     * @return the bytes read, fewer than length if the content ends before
+     */
+    public byte[] read(long position, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining() && read(buffer, position + buffer.position()) >= 0) {
+            // Reads until the buffer is full or the content ends
+        }
+        return buffer.hasRemaining() ? Arrays.copyOf(bytes, buffer.position()) : bytes;
+    }
+
+    /**
+     * @return the offset of the next byte read by {@link #read(ByteBuffer)}
+     */
+    public synchronized long position() {
+        return mPosition;
+    }
+
+    /**
+     * @param position the offset of the next byte read by {@link #read(ByteBuffer)}, which
+     *                 may be past the end of the content
+     */
+    public synchronized DriveChannel position(long position) throws IOException {
+        if (position < 0) {
+            throw new IllegalArgumentException("Negative position: " + position);
+        }
+        ensureOpen();
+        mPosition = position;
+        return this;
+    }
+
+    /**
+     * @return the length of the content in bytes
+     */
+    public long size() throws IOException {
+        ensureOpen();
+        return mChannel.size();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return mOpen.get();
+    }
+
+    /**
+     * Discards the DriveContents. Calling it more than once has no effect.
+     */
+    @Override
+    public void close() {
+        if (mOpen.compareAndSet(true, false)) {
+            mRelease.run();
+        }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!mOpen.get()) {
+            throw new ClosedChannelException();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.francescocervone.rxdrive;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * A Scheduler backed by a bounded pool of threads, used by RxDrive to run the blocking calls
+ * to Google Drive. Tasks submitted while all the threads are busy wait in a queue, and idle
+ * threads are released after {@link #KEEP_ALIVE_SECONDS} seconds.
+ *
+ * @see RxDrive#setSchedulers(DriveScheduler, DriveScheduler)
+ */
+public class DriveScheduler {
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static DriveScheduler sMetadata;
+    private static DriveScheduler sContent;
+
+    private final ThreadPoolExecutor mExecutor;
+    private final Scheduler mScheduler;
+
+    /**
+     * @param name       the prefix of the names of the threads
+     * @param maxThreads the maximum number of threads running at the same time
+     */
+    public DriveScheduler(final String name, int maxThreads) {
+        mExecutor = new ThreadPoolExecutor(
+                maxThreads,
+                maxThreads,
+                KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, name + "-" + mCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        mExecutor.allowCoreThreadTimeOut(true);
+        mScheduler = Schedulers.from(mExecutor);
+    }
+
+    /**
+     * @return the scheduler shared by default for metadata, listing and query calls
+     */
+    static synchronized DriveScheduler defaultMetadataScheduler() {
+        if (sMetadata == null) {
+            sMetadata = new DriveScheduler("RxDrive-metadata", 4);
+        }
+        return sMetadata;
+    }
+
+    /**
+     * @return the scheduler shared by default for content transfers
+     */
+    static synchronized DriveScheduler defaultContentScheduler() {
+        if (sContent == null) {
+            sContent = new DriveScheduler("RxDrive-content", 2);
+        }
+        return sContent;
+    }
+
+    public Scheduler getScheduler() {
+        return mScheduler;
+    }
+
+    /**
+     * @return the number of tasks waiting for a free thread
+     */
+    public int getQueueDepth() {
+        return mExecutor.getQueue().size();
+    }
+
+    /**
+     * @return the approximate number of threads that are running tasks
+     */
+    public int getActiveThreadCount() {
+        return mExecutor.getActiveCount();
+    }
+
+    /**
+     * @return the number of threads currently in the pool, either running or idle
+     */
+    public int getPoolSize() {
+        return mExecutor.getPoolSize();
+    }
+
+    /**
+     * @return the maximum number of threads of the pool
+     */
+    public int getMaxThreads() {
+        return mExecutor.getMaximumPoolSize();
+    }
+
+    /**
+     * Stops accepting new tasks, letting the queued ones complete
+     */
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+}
@@ -0,0 +1,19 @@
+package com.francescocervone.rxdrive;
+
+/**
+ * Defines how RxDrive waits for the results of the calls to Google Drive.
+ *
+ * @see RxDrive#setExecutionMode(ExecutionMode)
+ */
+public enum ExecutionMode {
+    /**
+     * Each call parks a thread in PendingResult.await() until its result is available
+     */
+    BLOCKING,
+    /**
+     * Each call registers a result callback and no thread waits for it, so many calls can run
+     * concurrently without a thread each. Disposing the call cancels its PendingResult.
+     * Content transfers are always blocking, because they copy streams.
+     */
+    CALLBACK
+}
@@ -0,0 +1,167 @@
+package com.francescocervone.rxdrive;
+
+import android.webkit.MimeTypeMap;
+
+import com.google.android.gms.drive.DriveFolder;
+import com.google.android.gms.drive.Metadata;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableEmitter;
+import io.reactivex.Single;
+
+/**
+ * Copies a local directory tree to a Drive folder and back. Folders are created before the
+ * files they contain, while the files are transferred in parallel. Trashed resources are not
+ * downloaded, and the local names of the others are made safe by {@link LocalPaths}.
+ */
+class FolderMirror {
+    private static final String GOOGLE_APPS_MIME_TYPE_PREFIX = "application/vnd.google-apps.";
+    private static final String DEFAULT_MIME_TYPE = "application/octet-stream";
+
+    private final RxDrive mRxDrive;
+
+    private static class Upload {
+        final File mFile;
+        final DriveFolder mFolder;
+
+        Upload(File file, DriveFolder folder) {
+            mFile = file;
+            mFolder = folder;
+        }
+    }
+
+    FolderMirror(RxDrive rxDrive) {
+        mRxDrive = rxDrive;
+    }
+
+    Flowable<Progress> upload(final File directory, final DriveFolder target, final int maxConcurrency) {
+        return Flowable.create(emitter -> {
+            FlowableEmitter<Progress> serializedEmitter = emitter.serialize();
+            AggregateProgress progress = new AggregateProgress(serializedEmitter, sizeOf(directory));
+            emitter.setDisposable(createFolders(directory, target, maxConcurrency)
+                    .flatMapCompletable(upload -> upload(upload, progress), false, maxConcurrency)
+                    .subscribe(progress::onComplete, serializedEmitter::onError));
+        }, BackpressureStrategy.LATEST);
+    }
+
+    Flowable<Progress> download(final DriveFolder source, final File directory, final int maxConcurrency) {
+        return mRxDrive.walk(source, new WalkOptions.Builder()
+                .filter(metadata -> !metadata.isTrashed() &&
+                        (metadata.isFolder() || hasContent(metadata)))
+                .maxConcurrency(maxConcurrency)
+                .build())
+                .toList()
+                .flatMapPublisher(entries -> Flowable.create(emitter -> {
+                    FlowableEmitter<Progress> serializedEmitter = emitter.serialize();
+                    mkdirs(directory);
+                    Map<WalkEntry, String> paths = LocalPaths.of(entries);
+                    Map<WalkEntry, File> files = new LinkedHashMap<>();
+                    long size = 0;
+                    for (WalkEntry entry : entries) {
+                        File file = LocalPaths.resolve(directory, paths.get(entry));
+                        if (entry.getMetadata().isFolder()) {
+                            mkdirs(file);
+                        } else {
+                            files.put(entry, file);
+                            size += entry.getMetadata().getFileSize();
+                        }
+                    }
+                    AggregateProgress progress = new AggregateProgress(serializedEmitter, size);
+                    emitter.setDisposable(Flowable.fromIterable(files.entrySet())
+                            .flatMapCompletable(file -> download(file.getKey(), file.getValue(), progress), false, maxConcurrency)
+                            .subscribe(progress::onComplete, serializedEmitter::onError));
+                }, BackpressureStrategy.LATEST));
+    }
+
+    /**
+     * Creates the folders of the tree on Drive, each one before its content
+     *
+     * @return a Flowable with the files to upload and the folders where to upload them
+     */
+    private Flowable<Upload> createFolders(File directory, DriveFolder folder, int maxConcurrency) {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return Flowable.error(new IOException("Unable to list " + directory));
+        }
+        return Flowable.fromArray(children)
+                .flatMap(child -> child.isDirectory() ?
+                                mRxDrive.createFolder(folder, child.getName())
+                                        .flatMapPublisher(childFolder -> createFolders(child, childFolder, maxConcurrency)) :
+                                Flowable.just(new Upload(child, folder)),
+                        maxConcurrency);
+    }
+
+    private Completable upload(Upload upload, AggregateProgress progress) {
+        return Single.using(
+                () -> new FileInputStream(upload.mFile),
+                inputStream -> mRxDrive.createFile(
+                        upload.mFolder,
+                        inputStream,
+                        upload.mFile.getName(),
+                        mimeTypeOf(upload.mFile),
+                        progress.newTransfer()),
+                InputStream::close)
+                .toCompletable();
+    }
+
+    private Completable download(WalkEntry entry, final File file, AggregateProgress progress) {
+        return mRxDrive.open(entry.getMetadata().getDriveId(), progress.newTransfer())
+                .flatMapCompletable(inputStream -> Completable.fromAction(() -> {
+                    try {
+                        OutputStream outputStream = new FileOutputStream(file);
+                        try {
+                            IOUtils.copy(inputStream, outputStream);
+                        } finally {
+                            outputStream.close();
+                        }
+                    } finally {
+                        inputStream.close();
+                    }
+                }));
+    }
+
+    private static long sizeOf(File directory) {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return 0;
+        }
+        long size = 0;
+        for (File child : children) {
+            size += child.isDirectory() ? sizeOf(child) : child.length();
+        }
+        return size;
+    }
+
+    private static void mkdirs(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+    }
+
+    /**
+     * @return false for Google Docs, Sheets and the other files without binary content
+     */
+    static boolean hasContent(Metadata metadata) {
+        String mimeType = metadata.getMimeType();
+        return mimeType == null || !mimeType.startsWith(GOOGLE_APPS_MIME_TYPE_PREFIX);
+    }
+
+    static String mimeTypeOf(File file) {
+        String extension = MimeTypeMap.getFileExtensionFromUrl(file.getPath());
+        String mimeType = extension != null ?
+                MimeTypeMap.getSingleton().getMimeTypeFromExtension(extension) :
+                null;
+        return mimeType != null ? mimeType : DEFAULT_MIME_TYPE;
+    }
+}
@@ -1,16 +1,184 @@
 package com.francescocervone.rxdrive;
 
-
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 class IOUtils {
-    static void copy(InputStream inputStream, OutputStream outputStream) throws IOException {
-        byte[] buffer = new byte[1024];
-        int n;
-        while ((n = inputStream.read(buffer)) > 0) {
-            outputStream.write(buffer, 0, n);
+
+    /**
+     * The maximum number of bytes moved between channels before notifying the Listener
+     */
+    private static final long TRANSFER_CHUNK_SIZE = 1024 * 1024;
+
+    interface Listener {
+        /**
+         * @param bytesCopied the number of bytes copied since the beginning of the copy
+         */
+        void onCopied(long bytesCopied);
+    }
+
+    /**
+     * Copies all the bytes of inputStream to outputStream
+     *
+     * @return the number of bytes copied
+     * @see #copy(InputStream, OutputStream, long, Listener)
+     */
+    static long copy(InputStream inputStream, OutputStream outputStream) throws IOException {
+        return copy(inputStream, outputStream, -1, null);
+    }
+
+    /**
+     * Copies all the bytes of inputStream to outputStream. When both streams are backed by
+     * files, the bytes are moved between their channels without passing through the Java heap,
+     * otherwise they are copied through a pooled buffer sized from the content length. If the
+     * channels stop moving bytes before the end, the rest is copied through the buffer.
+     *
+     * @param contentLength the expected number of bytes, or a negative value if unknown
+     * @param listener      notified while the bytes are copied, may be null
+     * @return the number of bytes copied
+     */
+    static long copy(InputStream inputStream,
+                     OutputStream outputStream,
+                     long contentLength,
+                     Listener listener) throws IOException {
+        long copied = 0;
+        if (inputStream instanceof FileInputStream && outputStream instanceof FileOutputStream) {
+            FileChannel input = ((FileInputStream) inputStream).getChannel();
+            long transferred = transfer(
+                    input,
+                    ((FileOutputStream) outputStream).getChannel(),
+                    listener);
+            if (transferred >= 0) {
+                copied = transferred;
+                if (input.position() >= input.size()) {
+                    return copied;
+                }
+                contentLength = input.size() - input.position();
+            }
+        }
+
+        if (contentLength < 0) {
+            int available = inputStream.available();
+            contentLength = available > 0 ? available : -1;
+        }
+
+        BufferPool pool = BufferPool.get();
+        byte[] buffer = pool.acquire(contentLength);
+        try {
+            int n;
+            while ((n = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, n);
+                copied += n;
+                if (listener != null) {
+                    listener.onCopied(copied);
+                }
+            }
+            return copied;
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    /**
+     * @return the number of bytes that can still be read from inputStream if it is backed by a
+     * file, -1 otherwise
+     */
+    static long remaining(InputStream inputStream) {
+        if (inputStream instanceof FileInputStream) {
+            try {
+                FileChannel channel = ((FileInputStream) inputStream).getChannel();
+                long remaining = channel.size() - channel.position();
+                return remaining > 0 ? remaining : -1;
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the hexadecimal MD5 checksum of the content of file, as reported by
+     * {@link com.google.android.gms.drive.Metadata#getMd5Checksum()}
+     */
+    static String md5(File file) throws IOException {
+        MessageDigest digest = md5Digest();
+        BufferPool pool = BufferPool.get();
+        byte[] buffer = pool.acquire(file.length());
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            int n;
+            while ((n = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+            }
+        } finally {
+            inputStream.close();
+            pool.release(buffer);
+        }
+        return hex(digest.digest());
+    }
+
+    static MessageDigest md5Digest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String hex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xf, 16))
+                    .append(Character.forDigit(b & 0xf, 16));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Moves the remaining bytes of a file channel to another channel, stopping early if
+     * transferTo does not move any byte
+     *
+     * @return the number of bytes moved, which may be less than the remaining ones, or -1 if
+     * the size of the input channel is unknown (e.g. it is a pipe) and the bytes must be copied
+     * through streams
+     */
+    private static long transfer(FileChannel input,
+                                 FileChannel output,
+                                 Listener listener) throws IOException {
+        long position;
+        long remaining;
+        try {
+            position = input.position();
+            remaining = input.size() - position;
+        } catch (IOException e) {
+            return -1;
+        }
+        if (remaining <= 0) {
+            return -1;
+        }
+
+        long copied = 0;
+        while (copied < remaining) {
+            long n = input.transferTo(
+                    position + copied,
+                    Math.min(remaining - copied, TRANSFER_CHUNK_SIZE),
+                    output);
+            if (n <= 0) {
+                break;
+            }
+            copied += n;
+            if (listener != null) {
+                listener.onCopied(copied);
+            }
         }
+        input.position(position + copied);
+        return copied;
     }
 }
@@ -0,0 +1,128 @@
+package com.francescocervone.rxdrive;
+
+import com.google.android.gms.drive.DriveId;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps the resources of a walked Drive tree to paths relative to a local directory. Drive
+ * titles may contain '/', be "..", and repeat within a folder, so they are turned into safe
+ * file names, and the resources with the same name in a folder get distinct names. The
+ * names do not depend on the order of the walk, so the same tree is always mapped the same
+ * way.
+ */
+class LocalPaths {
+    private static final char REPLACEMENT = '_';
+
+    private LocalPaths() {
+
+    }
+
+    /**
+     * @param entries the entries of a walk, each one after the entry of its folder
+     * @return the local path of each entry, whose names are separated by
+     * {@link WalkEntry#SEPARATOR}
+     */
+    static Map<WalkEntry, String> of(List<WalkEntry> entries) {
+        Map<WalkEntry, List<WalkEntry>> folders = new LinkedHashMap<>();
+        for (WalkEntry entry : entries) {
+            List<WalkEntry> children = folders.get(entry.getParent());
+            if (children == null) {
+                children = new ArrayList<>();
+                folders.put(entry.getParent(), children);
+            }
+            children.add(entry);
+        }
+        Map<WalkEntry, String> paths = new HashMap<>();
+        for (Map.Entry<WalkEntry, List<WalkEntry>> folder : folders.entrySet()) {
+            String path = paths.get(folder.getKey());
+            String prefix = path == null ? "" : path + WalkEntry.SEPARATOR;
+            for (Map.Entry<WalkEntry, String> name : namesOf(folder.getValue()).entrySet()) {
+                paths.put(name.getKey(), prefix + name.getValue());
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * @return a file of directory, checking that path does not point outside it
+     */
+    static File resolve(File directory, String path) throws IOException {
+        File file = new File(directory, path);
+        String root = directory.getCanonicalPath() + File.separator;
+        if (!file.getCanonicalPath().startsWith(root)) {
+            throw new IOException(path + " is outside of " + directory);
+        }
+        return file;
+    }
+
+    /**
+     * @return a file name made of title, where the separators are replaced and which cannot be
+     * "." or ".."
+     */
+    static String safeName(String title) {
+        String name = title == null ? "" : title
+                .replace(WalkEntry.SEPARATOR, REPLACEMENT)
+                .replace('\\', REPLACEMENT)
+                .replace('\0', REPLACEMENT);
+        if (name.isEmpty() || name.equals(".") || name.equals("..")) {
+            return REPLACEMENT + name;
+        }
+        return name;
+    }
+
+    /**
+     * Names the children of a folder. Among the children with the same name, the one with the
+     * lowest id keeps it, and the others get a number before the extension.
+     */
+    private static Map<WalkEntry, String> namesOf(List<WalkEntry> children) {
+        Map<String, List<WalkEntry>> byName = new LinkedHashMap<>();
+        for (WalkEntry child : children) {
+            String name = safeName(child.getMetadata().getTitle());
+            List<WalkEntry> sameName = byName.get(name);
+            if (sameName == null) {
+                sameName = new ArrayList<>();
+                byName.put(name, sameName);
+            }
+            sameName.add(child);
+        }
+        Set<String> used = new HashSet<>(byName.keySet());
+        Map<WalkEntry, String> names = new HashMap<>();
+        for (Map.Entry<String, List<WalkEntry>> group : byName.entrySet()) {
+            List<WalkEntry> sameName = group.getValue();
+            Collections.sort(sameName, (a, b) -> idOf(a).compareTo(idOf(b)));
+            names.put(sameName.get(0), group.getKey());
+            int number = 1;
+            for (int i = 1; i < sameName.size(); i++) {
+                String name;
+                do {
+                    name = numbered(group.getKey(), ++number);
+                } while (!used.add(name));
+                names.put(sameName.get(i), name);
+            }
+        }
+        return names;
+    }
+
+    private static String numbered(String name, int number) {
+        int extension = name.lastIndexOf('.');
+        return extension > 0 ?
+                name.substring(0, extension) + " (" + number + ")" + name.substring(extension) :
+                name + " (" + number + ")";
+    }
+
+    private static String idOf(WalkEntry entry) {
+        DriveId driveId = entry.getMetadata().getDriveId();
+        String resourceId = driveId.getResourceId();
+        return resourceId != null ? resourceId : driveId.encodeToString();
+    }
+}
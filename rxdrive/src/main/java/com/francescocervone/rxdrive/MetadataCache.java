@@ -0,0 +1,147 @@
+package com.francescocervone.rxdrive;
+
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.drive.DriveId;
+import com.google.android.gms.drive.Metadata;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-memory cache for the Metadata of Drive resources. It holds at most a fixed number of
+ * entries, evicting the least recently used ones, and each entry expires after a time to live.
+ * RxDrive invalidates the entries of the resources it changes, while changes made by other
+ * clients are seen once the entries expire or are invalidated explicitly.
+ *
+ * @see RxDrive#setMetadataCache(MetadataCache)
+ */
+public class MetadataCache {
+
+    private final long mTimeToLiveNanos;
+    private final Map<DriveId, Entry> mEntries;
+    // The generation of the last invalidation of each resource, evicting the oldest ones
+    private final Map<DriveId, Long> mInvalidations;
+    private long mGeneration;
+    // The generation of the last evicted invalidation, not older than any evicted one
+    private long mEvictedGeneration;
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+
+    private static class Entry {
+        final Metadata mMetadata;
+        final long mExpiration;
+
+        Entry(Metadata metadata, long expiration) {
+            mMetadata = metadata;
+            mExpiration = expiration;
+        }
+    }
+
+    /**
+     * @param maxEntries the maximum number of Metadata held by the cache
+     * @param timeToLive how long a Metadata is valid after it has been fetched
+     * @param unit       the unit of timeToLive
+     */
+    public MetadataCache(final int maxEntries, long timeToLive, TimeUnit unit) {
+        mTimeToLiveNanos = unit.toNanos(timeToLive);
+        mEntries = new LinkedHashMap<DriveId, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<DriveId, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        mInvalidations = new LinkedHashMap<DriveId, Long>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<DriveId, Long> eldest) {
+                if (size() > maxEntries) {
+                    mEvictedGeneration = eldest.getValue();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Removes the Metadata of a resource, so that it will be fetched again
+     *
+     * @param driveId the resource whose Metadata will be removed
+     */
+    public synchronized void invalidate(DriveId driveId) {
+        mEntries.remove(driveId);
+        mGeneration++;
+        // Removed first, so that the entries stay ordered by generation
+        mInvalidations.remove(driveId);
+        mInvalidations.put(driveId, mGeneration);
+    }
+
+    /**
+     * Removes all the Metadata held by the cache
+     */
+    public synchronized void invalidateAll() {
+        mEntries.clear();
+        mGeneration++;
+        mInvalidations.clear();
+        mEvictedGeneration = mGeneration;
+    }
+
+    /**
+     * @return the number of Metadata currently held by the cache
+     */
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * @return the number of lookups that found a valid Metadata
+     */
+    public long hitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * @return the number of lookups that required fetching the Metadata
+     */
+    public long missCount() {
+        return mMissCount.get();
+    }
+
+    @Nullable
+    synchronized Metadata get(DriveId driveId) {
+        Entry entry = mEntries.get(driveId);
+        if (entry != null && entry.mExpiration - System.nanoTime() > 0) {
+            mHitCount.incrementAndGet();
+            return entry.mMetadata;
+        }
+        if (entry != null) {
+            mEntries.remove(driveId);
+        }
+        mMissCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * @return the generation to pass to {@link #put(DriveId, Metadata, long)}, read before the
+     * Metadata is requested
+     */
+    synchronized long generation() {
+        return mGeneration;
+    }
+
+    /**
+     * Stores a Metadata, unless the resource has been invalidated after the Metadata was
+     * requested, in which case the Metadata may be stale
+     *
+     * @param generation the value of {@link #generation()} when the Metadata was requested
+     */
+    synchronized void put(DriveId driveId, Metadata metadata, long generation) {
+        Long invalidation = mInvalidations.get(driveId);
+        if ((invalidation != null ? invalidation : mEvictedGeneration) > generation) {
+            return;
+        }
+        mEntries.put(driveId, new Entry(metadata, System.nanoTime() + mTimeToLiveNanos));
+    }
+}
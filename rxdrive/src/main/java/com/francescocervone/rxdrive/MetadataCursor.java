@@ -0,0 +1,39 @@
+package com.francescocervone.rxdrive;
+
+import com.google.android.gms.drive.Metadata;
+import com.google.android.gms.drive.MetadataBuffer;
+
+/**
+ * Reads a MetadataBuffer one entry at a time, so that it can be used as the state of a
+ * Flowable and released as soon as the Flowable terminates or is cancelled.
+ */
+class MetadataCursor {
+    private final MetadataBuffer mBuffer;
+    private final int mCount;
+    private int mPosition;
+    private boolean mReleased;
+
+    MetadataCursor(MetadataBuffer buffer) {
+        mBuffer = buffer;
+        mCount = buffer.getCount();
+    }
+
+    boolean hasNext() {
+        return !mReleased && mPosition < mCount;
+    }
+
+    /**
+     * @return the next entry of the buffer, frozen so that it is still valid after the buffer is
+     * released
+     */
+    Metadata next() {
+        return mBuffer.get(mPosition++).freeze();
+    }
+
+    void release() {
+        if (!mReleased) {
+            mReleased = true;
+            mBuffer.release();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.francescocervone.rxdrive;
+
+/**
+ * The kinds of calls to Google Drive, each one with its own {@link RetryPolicy}
+ *
+ * @see RxDrive#setRetryPolicy(OperationType, RetryPolicy)
+ */
+public enum OperationType {
+    /**
+     * Fetching DriveIds and Metadata. Retried with {@link RetryPolicy#DEFAULT} by default.
+     */
+    METADATA,
+    /**
+     * Listing children and parents, and queries. Retried with {@link RetryPolicy#DEFAULT} by
+     * default.
+     */
+    QUERY,
+    /**
+     * Downloading contents. Retried with {@link RetryPolicy#DEFAULT} by default.
+     */
+    DOWNLOAD,
+    /**
+     * Creating folders, moving, trashing, deleting resources and sync requests. They are not
+     * retried by default, because a call that failed on the client may have succeeded on the
+     * server.
+     */
+    MUTATION
+}
@@ -0,0 +1,61 @@
+package com.francescocervone.rxdrive;
+
+import com.google.android.gms.drive.DriveId;
+
+/**
+ * The result of an operation on a single Drive resource, executed as part of a batch.
+ * It holds either the value produced by the operation or the error that made it fail.
+ *
+ * @param <T> the type of the value produced by the operation
+ */
+public class Outcome<T> {
+    private DriveId mDriveId;
+    private T mValue;
+    private Throwable mError;
+
+    private Outcome(DriveId driveId, T value, Throwable error) {
+        mDriveId = driveId;
+        mValue = value;
+        mError = error;
+    }
+
+    static <T> Outcome<T> success(DriveId driveId, T value) {
+        return new Outcome<>(driveId, value, null);
+    }
+
+    static <T> Outcome<T> failure(DriveId driveId, Throwable error) {
+        return new Outcome<>(driveId, null, error);
+    }
+
+    /**
+     * @return the DriveId of the resource the operation was executed on
+     */
+    public DriveId getDriveId() {
+        return mDriveId;
+    }
+
+    /**
+     * This method should be called when the operation succeeded
+     *
+     * @return the value produced by the operation
+     */
+    public T getValue() {
+        return mValue;
+    }
+
+    /**
+     * This method should be called when the operation failed
+     *
+     * @return the error of the operation, usually a {@link RxDriveException}
+     */
+    public Throwable getError() {
+        return mError;
+    }
+
+    /**
+     * @return true if the operation succeeded
+     */
+    public boolean isSuccess() {
+        return mError == null;
+    }
+}
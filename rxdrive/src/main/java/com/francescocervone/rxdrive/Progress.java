@@ -3,20 +3,40 @@ package com.francescocervone.rxdrive;
 public class Progress {
     private long mBytesDownloaded;
     private long mBytesExpected;
+    private long mElapsedMillis;
 
     Progress(long bytesDownloaded, long bytesExpected) {
+        this(bytesDownloaded, bytesExpected, 0);
+    }
+
+    Progress(long bytesDownloaded, long bytesExpected, long elapsedMillis) {
         mBytesDownloaded = bytesDownloaded;
         mBytesExpected = bytesExpected;
+        mElapsedMillis = elapsedMillis;
     }
 
     public long getBytesDownloaded() {
         return mBytesDownloaded;
     }
 
+    /**
+     * @return the bytes transferred so far, either downloaded or uploaded
+     */
+    public long getBytesTransferred() {
+        return mBytesDownloaded;
+    }
+
     public long getBytesExpected() {
         return mBytesExpected;
     }
 
+    /**
+     * @return the milliseconds elapsed since the transfer started, or 0 if unknown
+     */
+    public long getElapsedMillis() {
+        return mElapsedMillis;
+    }
+
     public double getPercentage() {
         if (mBytesExpected == -1) {
             return 100;
@@ -24,6 +44,27 @@ public class Progress {
         return (mBytesDownloaded * 100d) / mBytesExpected;
     }
 
+    /**
+     * @return the average throughput of the transfer in bytes per second, or 0 if unknown
+     */
+    public double getBytesPerSecond() {
+        if (mElapsedMillis <= 0) {
+            return 0;
+        }
+        return (mBytesDownloaded * 1000d) / mElapsedMillis;
+    }
+
+    /**
+     * @return the estimated milliseconds to the end of the transfer, or -1 if unknown
+     */
+    public long getEstimatedRemainingMillis() {
+        double bytesPerSecond = getBytesPerSecond();
+        if (mBytesExpected < 0 || bytesPerSecond <= 0) {
+            return -1;
+        }
+        return (long) ((mBytesExpected - mBytesDownloaded) * 1000d / bytesPerSecond);
+    }
+
     public boolean isCompleted() {
         return mBytesExpected == mBytesDownloaded;
     }
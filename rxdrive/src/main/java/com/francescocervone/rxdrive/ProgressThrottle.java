@@ -0,0 +1,56 @@
+package com.francescocervone.rxdrive;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Defines how often a transfer reports its Progress. Intermediate updates are dropped, while
+ * the final one is always reported.
+ */
+public class ProgressThrottle {
+
+    /**
+     * Reports the progress at most every 100 milliseconds
+     */
+    public static final ProgressThrottle DEFAULT = interval(100, TimeUnit.MILLISECONDS);
+
+    private long mIntervalNanos;
+    private double mPercentageStep;
+
+    private ProgressThrottle(long intervalNanos, double percentageStep) {
+        mIntervalNanos = intervalNanos;
+        mPercentageStep = percentageStep;
+    }
+
+    /**
+     * @param interval the minimum time between two reports
+     * @param unit     the unit of interval
+     * @return a throttle that reports the progress at most once per interval
+     */
+    public static ProgressThrottle interval(long interval, TimeUnit unit) {
+        return new ProgressThrottle(unit.toNanos(interval), 0);
+    }
+
+    /**
+     * @param percentageStep the minimum increment of percentage between two reports
+     * @return a throttle that reports the progress every percentageStep percent. If the
+     * expected size of the transfer is unknown, every update is reported.
+     */
+    public static ProgressThrottle percentageStep(double percentageStep) {
+        return new ProgressThrottle(0, percentageStep);
+    }
+
+    /**
+     * @return a throttle that reports every update
+     */
+    public static ProgressThrottle none() {
+        return new ProgressThrottle(0, 0);
+    }
+
+    long getIntervalNanos() {
+        return mIntervalNanos;
+    }
+
+    double getPercentageStep() {
+        return mPercentageStep;
+    }
+}
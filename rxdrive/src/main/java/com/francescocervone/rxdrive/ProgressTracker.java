@@ -0,0 +1,109 @@
+package com.francescocervone.rxdrive;
+
+import com.google.android.gms.drive.DriveFile;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Emitter;
+import io.reactivex.Observer;
+
+/**
+ * Turns the byte counts of a transfer into Progress emissions, dropping the updates that do
+ * not satisfy its {@link ProgressThrottle}. The state is kept in primitive fields, so a
+ * Progress is allocated only when it is emitted.
+ */
+class ProgressTracker implements IOUtils.Listener, DriveFile.DownloadProgressListener {
+
+    private final Emitter<Progress> mEmitter;
+    private final long mIntervalNanos;
+    private final double mPercentageStep;
+    private final long mStartNanos;
+    private long mBytesExpected;
+    private long mLastEmissionNanos;
+    private long mLastEmittedBytes = -1;
+    private long mLastBytes = -1;
+
+    ProgressTracker(Emitter<Progress> emitter, long bytesExpected, ProgressThrottle throttle) {
+        mEmitter = emitter;
+        mBytesExpected = bytesExpected;
+        mIntervalNanos = throttle.getIntervalNanos();
+        mPercentageStep = throttle.getPercentageStep();
+        mStartNanos = System.nanoTime();
+        mLastEmissionNanos = mStartNanos - mIntervalNanos;
+    }
+
+    ProgressTracker(Observer<Progress> observer, long bytesExpected, ProgressThrottle throttle) {
+        this(new Emitter<Progress>() {
+            @Override
+            public void onNext(Progress progress) {
+                observer.onNext(progress);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                observer.onError(error);
+            }
+
+            @Override
+            public void onComplete() {
+                observer.onComplete();
+            }
+        }, bytesExpected, throttle);
+    }
+
+    @Override
+    public void onCopied(long bytesCopied) {
+        onProgress(bytesCopied, mBytesExpected);
+    }
+
+    @Override
+    public void onProgress(long bytesTransferred, long bytesExpected) {
+        mBytesExpected = bytesExpected;
+        mLastBytes = bytesTransferred;
+        long now = System.nanoTime();
+        if (bytesTransferred != bytesExpected) {
+            if (now - mLastEmissionNanos < mIntervalNanos) {
+                return;
+            }
+            if (mPercentageStep > 0 && bytesExpected > 0 && mLastEmittedBytes >= 0
+                    && (bytesTransferred - mLastEmittedBytes) * 100d / bytesExpected < mPercentageStep) {
+                return;
+            }
+        }
+        emit(bytesTransferred, bytesExpected, now);
+    }
+
+    /**
+     * Emits the final Progress of the transfer, unless it has already been emitted, and
+     * completes the emitter
+     *
+     * @param bytesTransferred the total number of bytes transferred
+     */
+    void onComplete(long bytesTransferred) {
+        if (bytesTransferred != mLastEmittedBytes) {
+            emit(bytesTransferred, mBytesExpected < 0 ? bytesTransferred : mBytesExpected, System.nanoTime());
+        }
+        mEmitter.onComplete();
+    }
+
+    /**
+     * Emits the last update received, unless it has already been emitted, and completes the
+     * emitter
+     */
+    void onComplete() {
+        if (mLastBytes >= 0) {
+            onComplete(mLastBytes);
+        } else {
+            mEmitter.onComplete();
+        }
+    }
+
+    private void emit(long bytes, long bytesExpected, long now) {
+        mLastEmissionNanos = now;
+        mLastEmittedBytes = bytes;
+        mEmitter.onNext(new Progress(
+                bytes,
+                bytesExpected,
+                TimeUnit.NANOSECONDS.toMillis(now - mStartNanos)));
+    }
+}
@@ -0,0 +1,524 @@
+package com.francescocervone.rxdrive;
+
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.drive.DriveStatusCodes;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.Callable;
+
+import io.reactivex.Observer;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Uploads large files in chunks with the resumable upload protocol of the Drive REST API.
+ * The session and the offset confirmed by the server are stored in a checkpoint file after
+ * each chunk, so that an upload interrupted by a network error or by the death of the process
+ * resumes from the last confirmed offset the next time it is started for the same file.
+ * <p>
+ * The uploader talks to the REST endpoint directly, so it needs an OAuth access token with a
+ * Drive scope, e.g. obtained with GoogleAuthUtil. When the server rejects the token, e.g.
+ * because it expired, the token is invalidated and the request is sent again once with a new
+ * one.
+ */
+public class ResumableUploader {
+
+    /**
+     * The resumable upload endpoint of the Drive REST API
+     */
+    public static final String DEFAULT_ENDPOINT =
+            "https://www.googleapis.com/upload/drive/v3/files?uploadType=resumable";
+
+    /**
+     * The size of every chunk must be a multiple of this value
+     */
+    public static final int CHUNK_GRANULARITY = 256 * 1024;
+
+    private static final int DEFAULT_CHUNK_SIZE = 32 * CHUNK_GRANULARITY;
+    private static final int HTTP_RESUME_INCOMPLETE = 308;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    /**
+     * The number of chunks in a row the server may answer without confirming new bytes, before
+     * the upload fails with a transient error
+     */
+    private static final int MAX_STALLED_CHUNKS = 3;
+    private static final String RATE_LIMIT_EXCEEDED = "rateLimitExceeded";
+    private static final String USER_RATE_LIMIT_EXCEEDED = "userRateLimitExceeded";
+
+    private static final String SESSION = "session";
+    private static final String OFFSET = "offset";
+    private static final String LENGTH = "length";
+    private static final String MODIFIED = "modified";
+
+    private final Callable<String> mAccessTokenProvider;
+    private final File mCheckpointDirectory;
+    private volatile Consumer<String> mAccessTokenInvalidator;
+    private volatile String mEndpoint = DEFAULT_ENDPOINT;
+    private volatile int mChunkSize = DEFAULT_CHUNK_SIZE;
+    private volatile Scheduler mScheduler = Schedulers.io();
+
+    /**
+     * The access token of an upload, which is refreshed once when the server rejects it
+     */
+    private final class AccessToken {
+        private String mValue;
+        private boolean mRefreshed;
+
+        String get() throws Exception {
+            if (mValue == null) {
+                mValue = mAccessTokenProvider.call();
+            }
+            return mValue;
+        }
+
+        /**
+         * Invalidates the rejected token, unless it has just been refreshed
+         *
+         * @return true if the request can be sent again with a new token
+         */
+        boolean refresh() throws Exception {
+            if (mRefreshed) {
+                return false;
+            }
+            Consumer<String> invalidator = mAccessTokenInvalidator;
+            if (invalidator != null && mValue != null) {
+                invalidator.accept(mValue);
+            }
+            mValue = null;
+            mRefreshed = true;
+            return true;
+        }
+
+        /**
+         * Allows a new refresh, once the server accepted the token
+         */
+        void accepted() {
+            mRefreshed = false;
+        }
+    }
+
+    /**
+     * @param accessTokenProvider returns the OAuth access token sent with each request
+     * @param checkpointDirectory the directory where the checkpoints are stored. It should be
+     *                            used only by this uploader, e.g. a subdirectory of
+     *                            {@link android.content.Context#getFilesDir()}
+     */
+    public ResumableUploader(Callable<String> accessTokenProvider, File checkpointDirectory) {
+        mAccessTokenProvider = accessTokenProvider;
+        mCheckpointDirectory = checkpointDirectory;
+    }
+
+    /**
+     * @param accessTokenInvalidator called with a token rejected by the server, before asking
+     *                               the provider for a new one, e.g. to call
+     *                               GoogleAuthUtil.clearToken
+     */
+    public void setAccessTokenInvalidator(@Nullable Consumer<String> accessTokenInvalidator) {
+        mAccessTokenInvalidator = accessTokenInvalidator;
+    }
+
+    /**
+     * @param endpoint the URL where the upload sessions are created, {@link #DEFAULT_ENDPOINT}
+     *                 by default
+     */
+    public void setEndpoint(String endpoint) {
+        mEndpoint = endpoint;
+    }
+
+    /**
+     * @param chunkSize the number of bytes sent with each request, 8 MiB by default. It must be
+     *                  a multiple of {@link #CHUNK_GRANULARITY}.
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize <= 0 || chunkSize % CHUNK_GRANULARITY != 0) {
+            throw new IllegalArgumentException("chunkSize must be a multiple of " + CHUNK_GRANULARITY);
+        }
+        mChunkSize = chunkSize;
+    }
+
+    /**
+     * @param scheduler the scheduler where the blocking requests run, {@link Schedulers#io()}
+     *                  by default. Each upload keeps a thread busy until it ends, so the bounded
+     *                  schedulers of RxDrive are not a good fit.
+     */
+    public void setScheduler(Scheduler scheduler) {
+        mScheduler = scheduler;
+    }
+
+    /**
+     * Uploads a file, resuming the previous upload of the same file with the same title and
+     * parent if it was interrupted. If the file changed since then, the upload starts over.
+     * The returned Single can be retried to resume after a failure. The checkpoint is kept
+     * only if the failure is transient, i.e. an IOException or an RxDriveException with a
+     * transient status, so that a failure that would happen again makes the next upload start
+     * over.
+     *
+     * @param file             the file to upload
+     * @param title            the title of the new Drive file
+     * @param mimeType         the mime type of the new Drive file
+     * @param parentResourceId the resource id of the folder where to create the file, or null
+     *                         for the root folder
+     * @param progressObserver the observer that listens for upload progress, may be null
+     * @return a Single with the resource id of the new file, that can be passed to
+     * {@link RxDrive#fetchDriveId(String)}
+     */
+    public Single<String> upload(final File file,
+                                 final String title,
+                                 final String mimeType,
+                                 @Nullable final String parentResourceId,
+                                 @Nullable final Observer<Progress> progressObserver) {
+        return Single.fromCallable(() -> {
+            File checkpoint = new File(mCheckpointDirectory,
+                    IOUtils.hex(IOUtils.md5Digest().digest(
+                            (file.getAbsolutePath() + '\n' + title + '\n' + parentResourceId).getBytes("UTF-8"))));
+            try {
+                return upload(file, title, mimeType, parentResourceId, progressObserver, checkpoint);
+            } catch (Exception e) {
+                if (!isTransient(e)) {
+                    //noinspection ResultOfMethodCallIgnored
+                    checkpoint.delete();
+                }
+                throw e;
+            }
+        }).subscribeOn(mScheduler);
+    }
+
+    private String upload(File file,
+                          String title,
+                          String mimeType,
+                          @Nullable String parentResourceId,
+                          @Nullable Observer<Progress> progressObserver,
+                          File checkpoint) throws Exception {
+        long length = file.length();
+        ProgressTracker tracker = progressObserver != null ?
+                new ProgressTracker(progressObserver, length, ProgressThrottle.DEFAULT) :
+                null;
+        AccessToken token = new AccessToken();
+
+        String session;
+        long offset;
+        // A saved session is resumed asking the server how many bytes it received
+        boolean query;
+        JSONObject saved = readCheckpoint(checkpoint);
+        if (saved != null && saved.getLong(LENGTH) == length && saved.getLong(MODIFIED) == file.lastModified()) {
+            session = saved.getString(SESSION);
+            offset = saved.getLong(OFFSET);
+            query = true;
+        } else {
+            session = createSession(token, title, mimeType, parentResourceId, length);
+            offset = 0;
+            query = false;
+            writeCheckpoint(checkpoint, session, offset, length, file.lastModified());
+        }
+
+        String resourceId = null;
+        boolean expired = false;
+        int stalled = 0;
+        while (resourceId == null) {
+            boolean chunk = !query;
+            HttpURLConnection connection = query ?
+                    queryStatus(token, session, length) :
+                    sendChunk(token, session, file, offset, length, tracker);
+            query = false;
+            try {
+                int code = connection.getResponseCode();
+                if (code == HttpURLConnection.HTTP_UNAUTHORIZED && token.refresh()) {
+                    // Some bytes may have been received before the token was rejected
+                    query = true;
+                } else if (code == HTTP_RESUME_INCOMPLETE) {
+                    token.accepted();
+                    long confirmed = confirmedOffset(connection);
+                    if (chunk && confirmed <= offset && ++stalled >= MAX_STALLED_CHUNKS) {
+                        // Left to the retries of the caller, which resume from the checkpoint
+                        throw new RxDriveException(new Status(CommonStatusCodes.NETWORK_ERROR,
+                                "The server received no new bytes after " + stalled + " chunks"));
+                    } else if (confirmed > offset) {
+                        stalled = 0;
+                    }
+                    offset = confirmed;
+                    writeCheckpoint(checkpoint, session, offset, length, file.lastModified());
+                } else if (code == HttpURLConnection.HTTP_OK || code == HttpURLConnection.HTTP_CREATED) {
+                    resourceId = new JSONObject(readBody(connection.getInputStream())).getString("id");
+                } else if (!expired && (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_GONE)) {
+                    // The session expired, the upload starts over once
+                    expired = true;
+                    session = createSession(token, title, mimeType, parentResourceId, length);
+                    offset = 0;
+                    writeCheckpoint(checkpoint, session, offset, length, file.lastModified());
+                } else {
+                    throw failure(connection);
+                }
+            } finally {
+                connection.disconnect();
+            }
+        }
+
+        //noinspection ResultOfMethodCallIgnored
+        checkpoint.delete();
+        if (tracker != null) {
+            tracker.onComplete(length);
+        }
+        return resourceId;
+    }
+
+    /**
+     * Starts a new upload session
+     *
+     * @return the URL of the session
+     */
+    private String createSession(AccessToken token,
+                                 String title,
+                                 String mimeType,
+                                 @Nullable String parentResourceId,
+                                 long length) throws Exception {
+        JSONObject metadata = new JSONObject()
+                .put("name", title)
+                .put("mimeType", mimeType);
+        if (parentResourceId != null) {
+            metadata.put("parents", new JSONArray().put(parentResourceId));
+        }
+        byte[] body = metadata.toString().getBytes("UTF-8");
+
+        while (true) {
+            HttpURLConnection connection = open(token, mEndpoint, "POST");
+            try {
+                connection.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
+                connection.setRequestProperty("X-Upload-Content-Type", mimeType);
+                connection.setRequestProperty("X-Upload-Content-Length", String.valueOf(length));
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(body.length);
+                OutputStream outputStream = connection.getOutputStream();
+                try {
+                    outputStream.write(body);
+                } finally {
+                    outputStream.close();
+                }
+                int code = connection.getResponseCode();
+                if (code == HttpURLConnection.HTTP_UNAUTHORIZED && token.refresh()) {
+                    continue;
+                }
+                if (code != HttpURLConnection.HTTP_OK) {
+                    throw failure(connection);
+                }
+                token.accepted();
+                String session = connection.getHeaderField("Location");
+                if (session == null) {
+                    throw new IOException("Missing upload session");
+                }
+                return session;
+            } finally {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Sends an empty request asking for the upload status. The caller must read the response
+     * and disconnect.
+     */
+    private HttpURLConnection queryStatus(AccessToken token, String session, long length) throws Exception {
+        HttpURLConnection connection = open(token, session, "PUT");
+        try {
+            connection.setRequestProperty("Content-Range", "bytes */" + length);
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(0);
+            connection.getOutputStream().close();
+        } catch (Exception e) {
+            connection.disconnect();
+            throw e;
+        }
+        return connection;
+    }
+
+    /**
+     * Sends the chunk starting at offset. The caller must read the response and disconnect.
+     */
+    private HttpURLConnection sendChunk(AccessToken token,
+                                        String session,
+                                        File file,
+                                        long offset,
+                                        long length,
+                                        @Nullable ProgressTracker tracker) throws Exception {
+        int chunkLength = (int) Math.min(mChunkSize, length - offset);
+        HttpURLConnection connection = open(token, session, "PUT");
+        connection.setRequestProperty("Content-Range", chunkLength > 0 ?
+                "bytes " + offset + "-" + (offset + chunkLength - 1) + "/" + length :
+                "bytes */" + length);
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(chunkLength);
+
+        FileInputStream inputStream = new FileInputStream(file);
+        BufferPool pool = BufferPool.get();
+        byte[] buffer = pool.acquire(chunkLength);
+        try {
+            inputStream.getChannel().position(offset);
+            OutputStream outputStream = connection.getOutputStream();
+            try {
+                int sent = 0;
+                while (sent < chunkLength) {
+                    int n = inputStream.read(buffer, 0, Math.min(buffer.length, chunkLength - sent));
+                    if (n == -1) {
+                        throw new IOException(file + " changed during the upload");
+                    }
+                    outputStream.write(buffer, 0, n);
+                    sent += n;
+                    if (tracker != null) {
+                        tracker.onProgress(offset + sent, length);
+                    }
+                }
+            } finally {
+                outputStream.close();
+            }
+        } catch (Exception e) {
+            connection.disconnect();
+            throw e;
+        } finally {
+            inputStream.close();
+            pool.release(buffer);
+        }
+        return connection;
+    }
+
+    private HttpURLConnection open(AccessToken token, String url, String method) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        connection.setInstanceFollowRedirects(false);
+        connection.setRequestProperty("Authorization", "Bearer " + token.get());
+        return connection;
+    }
+
+    /**
+     * @return the offset following the last byte confirmed by the Range header of a 308
+     * response, 0 if no byte has been received
+     */
+    private static long confirmedOffset(HttpURLConnection connection) {
+        String range = connection.getHeaderField("Range");
+        if (range == null) {
+            return 0;
+        }
+        int separator = range.lastIndexOf('-');
+        return Long.parseLong(range.substring(separator + 1).trim()) + 1;
+    }
+
+    private static RxDriveException failure(HttpURLConnection connection) throws IOException {
+        int code = connection.getResponseCode();
+        int statusCode;
+        if (code == HTTP_TOO_MANY_REQUESTS ||
+                (code == HttpURLConnection.HTTP_FORBIDDEN && isRateLimitExceeded(connection))) {
+            statusCode = DriveStatusCodes.DRIVE_RATE_LIMIT_EXCEEDED;
+        } else if (code == HttpURLConnection.HTTP_UNAUTHORIZED) {
+            statusCode = CommonStatusCodes.SIGN_IN_REQUIRED;
+        } else if (code >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+            statusCode = CommonStatusCodes.NETWORK_ERROR;
+        } else {
+            statusCode = CommonStatusCodes.ERROR;
+        }
+        return new RxDriveException(new Status(statusCode, "HTTP " + code + " " + connection.getResponseMessage()));
+    }
+
+    /**
+     * @return true if the error of a 403 response is a rate limit, which is worth retrying,
+     * rather than a missing permission
+     */
+    private static boolean isRateLimitExceeded(HttpURLConnection connection) {
+        InputStream errorStream = connection.getErrorStream();
+        if (errorStream == null) {
+            return false;
+        }
+        try {
+            JSONArray errors = new JSONObject(readBody(errorStream))
+                    .getJSONObject("error")
+                    .getJSONArray("errors");
+            for (int i = 0; i < errors.length(); i++) {
+                String reason = errors.getJSONObject(i).optString("reason");
+                if (RATE_LIMIT_EXCEEDED.equals(reason) || USER_RATE_LIMIT_EXCEEDED.equals(reason)) {
+                    return true;
+                }
+            }
+        } catch (IOException | JSONException e) {
+            // An unreadable error is not a rate limit
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the upload may succeed resuming from the checkpoint
+     */
+    private static boolean isTransient(Exception e) {
+        return e instanceof IOException ||
+                (e instanceof RxDriveException && RetryPolicy.isTransient(((RxDriveException) e).getStatus()));
+    }
+
+    @Nullable
+    private static JSONObject readCheckpoint(File checkpoint) throws IOException {
+        if (!checkpoint.exists()) {
+            return null;
+        }
+        try {
+            return new JSONObject(readBody(new FileInputStream(checkpoint)));
+        } catch (JSONException e) {
+            //noinspection ResultOfMethodCallIgnored
+            checkpoint.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Writes the checkpoint to a temporary file, then replaces the previous one with it
+     */
+    private void writeCheckpoint(File checkpoint,
+                                 String session,
+                                 long offset,
+                                 long length,
+                                 long modified) throws IOException, JSONException {
+        if (!mCheckpointDirectory.isDirectory() && !mCheckpointDirectory.mkdirs()) {
+            throw new IOException("Unable to create " + mCheckpointDirectory);
+        }
+        byte[] content = new JSONObject()
+                .put(SESSION, session)
+                .put(OFFSET, offset)
+                .put(LENGTH, length)
+                .put(MODIFIED, modified)
+                .toString()
+                .getBytes("UTF-8");
+        File temp = new File(checkpoint.getPath() + ".tmp");
+        OutputStream outputStream = new FileOutputStream(temp);
+        try {
+            outputStream.write(content);
+        } finally {
+            outputStream.close();
+        }
+        if (!temp.renameTo(checkpoint)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            throw new IOException("Unable to write " + checkpoint);
+        }
+    }
+
+    private static String readBody(InputStream inputStream) throws IOException {
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            IOUtils.copy(inputStream, outputStream);
+            return outputStream.toString("UTF-8");
+        } finally {
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.francescocervone.rxdrive;
+
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.drive.DriveStatusCodes;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Defines how a failed call to Google Drive is retried. Only the failures with a transient
+ * status are retried: network errors, timeouts, interruptions, internal errors and rate limit
+ * errors. The delay between two attempts grows exponentially up to a maximum, and a random
+ * jitter spreads the retries of concurrent calls so that they do not hit the service together.
+ *
+ * @see RxDrive#setRetryPolicy(OperationType, RetryPolicy)
+ */
+public class RetryPolicy {
+
+    /**
+     * Retries 3 times, waiting 500 milliseconds before the first retry and at most 30 seconds
+     */
+    public static final RetryPolicy DEFAULT = exponential(3, 500, 30000, TimeUnit.MILLISECONDS);
+
+    private static final int MULTIPLIER = 2;
+    private static final Random RANDOM = new Random();
+
+    private int mMaxRetries;
+    private long mInitialDelayMillis;
+    private long mMaxDelayMillis;
+
+    private RetryPolicy(int maxRetries, long initialDelayMillis, long maxDelayMillis) {
+        mMaxRetries = maxRetries;
+        mInitialDelayMillis = initialDelayMillis;
+        mMaxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * @param maxRetries   the maximum number of retries after the first attempt
+     * @param initialDelay the delay before the first retry, doubled at each following retry
+     * @param maxDelay     the maximum delay between two attempts
+     * @param unit         the unit of initialDelay and maxDelay
+     * @return a policy with exponential backoff. Each delay is randomly chosen between half
+     * and the whole computed delay.
+     */
+    public static RetryPolicy exponential(int maxRetries, long initialDelay, long maxDelay, TimeUnit unit) {
+        return new RetryPolicy(maxRetries, unit.toMillis(initialDelay), unit.toMillis(maxDelay));
+    }
+
+    /**
+     * @return a policy that never retries
+     */
+    public static RetryPolicy none() {
+        return new RetryPolicy(0, 0, 0);
+    }
+
+    /**
+     * @param status the status of a failed call
+     * @return true if the call may succeed when retried
+     */
+    public static boolean isTransient(Status status) {
+        switch (status.getStatusCode()) {
+            case CommonStatusCodes.NETWORK_ERROR:
+            case CommonStatusCodes.INTERNAL_ERROR:
+            case CommonStatusCodes.INTERRUPTED:
+            case CommonStatusCodes.TIMEOUT:
+            case DriveStatusCodes.DRIVE_RATE_LIMIT_EXCEEDED:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param retry  the number of retries already done
+     * @param status the status of the last failure
+     * @return true if the call should be retried
+     */
+    boolean shouldRetry(int retry, Status status) {
+        return retry < mMaxRetries && isTransient(status);
+    }
+
+    /**
+     * @param retry the number of retries already done
+     * @return the delay before the next attempt, in milliseconds
+     */
+    long delayMillis(int retry) {
+        long delay = mInitialDelayMillis;
+        for (int i = 0; i < retry && delay < mMaxDelayMillis; i++) {
+            delay *= MULTIPLIER;
+        }
+        delay = Math.min(delay, mMaxDelayMillis);
+        long half = delay / 2;
+        synchronized (RANDOM) {
+            return half + (long) (RANDOM.nextDouble() * (delay - half));
+        }
+    }
+}
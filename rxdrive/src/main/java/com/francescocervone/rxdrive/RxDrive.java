@@ -7,13 +7,17 @@ import android.content.Intent;
 import android.content.IntentSender;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
 import android.support.annotation.Nullable;
-import android.util.Log;
 import android.webkit.MimeTypeMap;
 
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.GoogleApiAvailability;
+import com.google.android.gms.common.api.CommonStatusCodes;
 import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Releasable;
+import com.google.android.gms.common.api.Result;
 import com.google.android.gms.common.api.Status;
 import com.google.android.gms.drive.Drive;
 import com.google.android.gms.drive.DriveApi;
@@ -22,51 +26,106 @@ import com.google.android.gms.drive.DriveFile;
 import com.google.android.gms.drive.DriveFolder;
 import com.google.android.gms.drive.DriveId;
 import com.google.android.gms.drive.DriveResource;
+import com.google.android.gms.drive.ExecutionOptions;
 import com.google.android.gms.drive.Metadata;
 import com.google.android.gms.drive.MetadataBuffer;
 import com.google.android.gms.drive.MetadataChangeSet;
+import com.google.android.gms.drive.events.ChangeEvent;
+import com.google.android.gms.drive.events.ChangeListener;
+import com.google.android.gms.drive.events.CompletionEvent;
 import com.google.android.gms.drive.query.Query;
 
+import org.reactivestreams.Publisher;
+
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.BackpressureStrategy;
 import io.reactivex.Completable;
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableEmitter;
 import io.reactivex.Observable;
 import io.reactivex.Observer;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
-import io.reactivex.subjects.PublishSubject;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.BehaviorSubject;
 
 public class RxDrive {
 
     private static final int RESOLVE_CONNECTION_REQUEST_CODE = 1;
     private static final int NO_RESOLUTION_REQUEST_CODE = 0;
+    private static final int DEFAULT_MAX_CONCURRENCY = 4;
+    private static final int DEFAULT_MAX_QUEUED_OPERATIONS = 64;
+    private static final long DEFAULT_QUEUE_TIMEOUT_SECONDS = 30;
+    private static final long DEFAULT_COMPLETION_TIMEOUT_MINUTES = 10;
 
-    private PublishSubject<ConnectionState> mConnectionStatePublishSubject = PublishSubject.create();
+    private BehaviorSubject<ConnectionState> mConnectionStateSubject = BehaviorSubject.create();
 
     private GoogleApiClient mClient;
+    private volatile ContentCache mContentCache;
+    private volatile MetadataCache mMetadataCache;
+    private volatile BlockCache mBlockCache;
+    private volatile DriveScheduler mMetadataScheduler = DriveScheduler.defaultMetadataScheduler();
+    private volatile DriveScheduler mContentScheduler = DriveScheduler.defaultContentScheduler();
+    private volatile boolean mSchedulersEnabled = true;
+    private volatile ExecutionMode mExecutionMode = ExecutionMode.BLOCKING;
+    private final SingleFlight<String, DriveId> mFetchDriveIdFlights = new SingleFlight<>();
+    private final SingleFlight<DriveId, Metadata> mMetadataFlights = new SingleFlight<>();
+    private final SingleFlight<DriveId, SharedContents> mOpenFlights = new SingleFlight<>(SharedContents::close);
+    private final AtomicInteger mQueuedOperations = new AtomicInteger();
+    private final AtomicInteger mOpenContents = new AtomicInteger();
+    private final Map<OperationType, RetryPolicy> mRetryPolicies = new ConcurrentHashMap<>();
+    private final Map<OperationType, AtomicLong> mRetryCounts = new EnumMap<>(OperationType.class);
+    private volatile int mMaxQueuedOperations = DEFAULT_MAX_QUEUED_OPERATIONS;
+    private volatile long mQueueTimeoutMillis = TimeUnit.SECONDS.toMillis(DEFAULT_QUEUE_TIMEOUT_SECONDS);
+    private volatile long mCompletionTimeoutMillis = TimeUnit.MINUTES.toMillis(DEFAULT_COMPLETION_TIMEOUT_MINUTES);
     private GoogleApiClient.ConnectionCallbacks mConnectionCallbacks = new GoogleApiClient.ConnectionCallbacks() {
         @Override
         public void onConnected(@Nullable Bundle bundle) {
-            mConnectionStatePublishSubject.onNext(ConnectionState.connected(bundle));
+            mConnectionStateSubject.onNext(ConnectionState.connected(bundle));
         }
 
         @Override
         public void onConnectionSuspended(int cause) {
-            mConnectionStatePublishSubject.onNext(ConnectionState.suspended(cause));
+            mConnectionStateSubject.onNext(ConnectionState.suspended(cause));
         }
     };
 
     private GoogleApiClient.OnConnectionFailedListener mConnectionFailedListener =
-            connectionResult -> mConnectionStatePublishSubject.onNext(ConnectionState.failed(connectionResult));
+            connectionResult -> mConnectionStateSubject.onNext(ConnectionState.failed(connectionResult));
 
     /**
      * @param builder is a GoogleApiClient builder for your application
      */
     public RxDrive(GoogleApiClient.Builder builder) {
+        for (OperationType type : OperationType.values()) {
+            mRetryPolicies.put(type, type == OperationType.MUTATION ? RetryPolicy.none() : RetryPolicy.DEFAULT);
+            mRetryCounts.put(type, new AtomicLong());
+        }
         mClient = builder.addApi(Drive.API)
                 .addConnectionCallbacks(mConnectionCallbacks)
                 .addOnConnectionFailedListener(mConnectionFailedListener)
@@ -89,12 +148,195 @@ public class RxDrive {
 
 
     /**
-     * Creates an Observable that emits the connection state changes the GoogleApiClient
+     * Creates an Observable that emits the connection state changes the GoogleApiClient.
+     * New subscribers receive the latest state first.
      *
      * @return the Observable for connection state changes
      */
     public Observable<ConnectionState> connectionObservable() {
-        return mConnectionStatePublishSubject;
+        return mConnectionStateSubject;
+    }
+
+    /**
+     * Sets the cache used by {@link #open(DriveId)} and its overloads. Before downloading a file,
+     * its Metadata is fetched and, if the cached content has the same modified date and MD5
+     * checksum, the content is read from the cache instead.
+     *
+     * @param contentCache the cache for the contents of the files, or null to disable it
+     */
+    public void setContentCache(@Nullable ContentCache contentCache) {
+        mContentCache = contentCache;
+    }
+
+    /**
+     * @return the cache used for the contents of the files, or null if disabled
+     */
+    @Nullable
+    public ContentCache getContentCache() {
+        return mContentCache;
+    }
+
+    /**
+     * Sets the cache used by {@link #getMetadata(DriveResource)}. The Metadata of the resources
+     * changed through this RxDrive, and of the folders where files are created, is invalidated
+     * automatically.
+     *
+     * @param metadataCache the cache for the Metadata, or null to disable it
+     */
+    public void setMetadataCache(@Nullable MetadataCache metadataCache) {
+        mMetadataCache = metadataCache;
+    }
+
+    /**
+     * @return the cache used for the Metadata, or null if disabled
+     */
+    @Nullable
+    public MetadataCache getMetadataCache() {
+        return mMetadataCache;
+    }
+
+    /**
+     * Sets the cache used by {@link #read(DriveId, long, int)}. Before reading, the Metadata of
+     * the file is fetched and the blocks cached for its modified date and MD5 checksum are used
+     * instead of opening the file. The blocks of the files changed through this RxDrive are
+     * invalidated automatically.
+     *
+     * @param blockCache the cache for the blocks of the contents, or null to disable it
+     */
+    public void setBlockCache(@Nullable BlockCache blockCache) {
+        mBlockCache = blockCache;
+    }
+
+    /**
+     * @return the cache used for the blocks of the contents, or null if disabled
+     */
+    @Nullable
+    public BlockCache getBlockCache() {
+        return mBlockCache;
+    }
+
+    /**
+     * Sets the schedulers where the blocking calls to Google Drive are executed. By default,
+     * RxDrive uses two bounded pools shared by all its instances: one for metadata, listing and
+     * query calls, one for content transfers.
+     *
+     * @param metadataScheduler the scheduler for metadata, listing and query calls
+     * @param contentScheduler  the scheduler for content transfers
+     */
+    public void setSchedulers(DriveScheduler metadataScheduler, DriveScheduler contentScheduler) {
+        mMetadataScheduler = metadataScheduler;
+        mContentScheduler = contentScheduler;
+    }
+
+    /**
+     * Enables or disables the schedulers of RxDrive. When disabled, the blocking calls run on the
+     * thread where they are subscribed, so you have to use subscribeOn yourself.
+     *
+     * @param enabled true to run the calls on the RxDrive schedulers, which is the default
+     * @see #setSchedulers(DriveScheduler, DriveScheduler)
+     */
+    public void setSchedulersEnabled(boolean enabled) {
+        mSchedulersEnabled = enabled;
+    }
+
+    /**
+     * Sets how RxDrive waits for the results of metadata, listing and query calls.
+     * The default is {@link ExecutionMode#BLOCKING}.
+     *
+     * @param executionMode the mode used by the calls created after this method returns
+     */
+    public void setExecutionMode(ExecutionMode executionMode) {
+        mExecutionMode = executionMode;
+    }
+
+    /**
+     * @return the scheduler for metadata, listing and query calls, which exposes its metrics
+     */
+    public DriveScheduler getMetadataScheduler() {
+        return mMetadataScheduler;
+    }
+
+    /**
+     * @return the scheduler for content transfers, which exposes its metrics
+     */
+    public DriveScheduler getContentScheduler() {
+        return mContentScheduler;
+    }
+
+    /**
+     * Sets how the operations started while GoogleApiClient is not connected are queued.
+     * Queued operations run as soon as the connection is established. An operation fails with
+     * an RxDriveException with status {@link CommonStatusCodes#API_NOT_CONNECTED} if the queue
+     * is full, or with status {@link CommonStatusCodes#TIMEOUT} if the connection is not
+     * established in time. By default at most {@value #DEFAULT_MAX_QUEUED_OPERATIONS}
+     * operations wait {@value #DEFAULT_QUEUE_TIMEOUT_SECONDS} seconds.
+     *
+     * @param maxSize the maximum number of operations waiting for the connection
+     * @param timeout how long an operation waits for the connection
+     * @param unit    the unit of timeout
+     */
+    public void setOperationQueue(int maxSize, long timeout, TimeUnit unit) {
+        mMaxQueuedOperations = maxSize;
+        mQueueTimeoutMillis = unit.toMillis(timeout);
+    }
+
+    /**
+     * Sets how long the uploads that wait for the commit to the server wait for its
+     * notification, {@value #DEFAULT_COMPLETION_TIMEOUT_MINUTES} minutes by default. The
+     * notification may never arrive, e.g. if the process is restarted in the meantime or
+     * {@link RxDriveEventService} is not declared. Then the upload fails with an
+     * RxDriveException with status {@link CommonStatusCodes#TIMEOUT}, even though the
+     * content may still be committed later.
+     *
+     * @param timeout how long an upload waits for the notification of the commit
+     * @param unit    the unit of timeout
+     */
+    public void setCompletionTimeout(long timeout, TimeUnit unit) {
+        mCompletionTimeoutMillis = unit.toMillis(timeout);
+    }
+
+    /**
+     * Sets how the failed calls of a type are retried. It applies to the calls created after
+     * this method returns. Uploads are never retried, because they consume their content.
+     *
+     * @param type        the type of the calls
+     * @param retryPolicy the policy used to retry the calls
+     * @see OperationType
+     */
+    public void setRetryPolicy(OperationType type, RetryPolicy retryPolicy) {
+        mRetryPolicies.put(type, retryPolicy);
+    }
+
+    /**
+     * @param type the type of the calls
+     * @return the policy used to retry the calls
+     */
+    public RetryPolicy getRetryPolicy(OperationType type) {
+        return mRetryPolicies.get(type);
+    }
+
+    /**
+     * @param type the type of the calls
+     * @return the number of retries made for the calls of a type since this RxDrive was created
+     */
+    public long getRetryCount(OperationType type) {
+        return mRetryCounts.get(type).get();
+    }
+
+    /**
+     * @return the number of operations waiting for the connection
+     */
+    public int getQueuedOperationCount() {
+        return mQueuedOperations.get();
+    }
+
+    /**
+     * @return the number of DriveContents opened by RxDrive and not yet committed or
+     * discarded. It should go back to zero once all the InputStreams returned by
+     * {@link #open(DriveId)} have been closed: a growing value means that contents are leaking.
+     */
+    public int getOpenContentsCount() {
+        return mOpenContents.get();
     }
 
     /**
@@ -109,6 +351,7 @@ public class RxDrive {
      */
     public void disconnect() {
         mClient.disconnect();
+        mConnectionStateSubject.onNext(ConnectionState.disconnected());
     }
 
     /**
@@ -135,21 +378,14 @@ public class RxDrive {
     }
 
     /**
-     * Fetches a driveId
+     * Fetches a driveId. Concurrent fetches of the same string share a single request.
      *
      * @param s the string of the driveId
      * @return an Observable with the driveId if exists
      */
     public Single<DriveId> fetchDriveId(final String s) {
-        return Single.fromCallable(() -> {
-            DriveApi.DriveIdResult driveIdResult = Drive.DriveApi.fetchDriveId(mClient, s)
-                    .await();
-            if (driveIdResult.getStatus().isSuccess()) {
-                return driveIdResult.getDriveId();
-            } else {
-                throw new RxDriveException(driveIdResult.getStatus());
-            }
-        });
+        return mFetchDriveIdFlights.join(s, execute(OperationType.METADATA, () -> Drive.DriveApi.fetchDriveId(mClient, s))
+                .map(DriveApi.DriveIdResult::getDriveId));
     }
 
     /**
@@ -158,24 +394,30 @@ public class RxDrive {
      * @return an Observable with the list of the resources
      */
     public Single<List<DriveId>> listChildren(final DriveFolder driveFolder) {
-        return Single.fromCallable(() -> {
-            List<DriveId> list = new ArrayList<>();
-
-            DriveApi.MetadataBufferResult result = driveFolder.listChildren(mClient).await();
-
-            if (result.getStatus().isSuccess()) {
-                MetadataBuffer buffer = result.getMetadataBuffer();
+        return listChildren(driveFolder, Metadata::getDriveId);
+    }
 
-                for (Metadata m : buffer) {
-                    list.add(m.getDriveId());
-                }
+    /**
+     * Lists resources in a folder, projecting each entry while the MetadataBuffer is read
+     *
+     * @param driveFolder the folder to list
+     * @param projection  the function that extracts the fields you need from each entry. The
+     *                    Metadata passed to it is only valid during the call
+     * @return an Observable with the list of the projected resources
+     */
+    public <T> Single<List<T>> listChildren(final DriveFolder driveFolder,
+                                            final Function<Metadata, T> projection) {
+        return collectMetadata(() -> driveFolder.listChildren(mClient), projection);
+    }
 
-                buffer.release();
-                return list;
-            } else {
-                throw new RxDriveException(result.getStatus());
-            }
-        });
+    /**
+     * Lists resources in a folder with their Metadata, read in a single call
+     *
+     * @param driveFolder the folder to list
+     * @return an Observable with the list of the frozen Metadata of the resources
+     */
+    public Single<List<Metadata>> listChildrenMetadata(final DriveFolder driveFolder) {
+        return listChildren(driveFolder, Metadata::freeze);
     }
 
 
@@ -186,26 +428,61 @@ public class RxDrive {
      * @return the list of the parents
      */
     public Single<List<DriveId>> listParents(final DriveResource driveResource) {
-        return Single.fromCallable(() -> {
-            List<DriveId> list = new ArrayList<>();
+        return listParents(driveResource, Metadata::getDriveId);
+    }
 
-            DriveApi.MetadataBufferResult result = driveResource.listParents(mClient).await();
+    /**
+     * Lists the parents of a Drive resource, projecting each entry while the MetadataBuffer is read
+     *
+     * @param driveResource the resource whose parents will be listed
+     * @param projection    the function that extracts the fields you need from each entry
+     * @return the list of the projected parents
+     * @see #listChildren(DriveFolder, Function)
+     */
+    public <T> Single<List<T>> listParents(final DriveResource driveResource,
+                                           final Function<Metadata, T> projection) {
+        return collectMetadata(() -> driveResource.listParents(mClient), projection);
+    }
 
-            if (result.getStatus().isSuccess()) {
-                MetadataBuffer buffer = result.getMetadataBuffer();
+    /**
+     * Lists the parents of a Drive resource with their Metadata, read in a single call
+     *
+     * @param driveResource the resource whose parents will be listed
+     * @return the list of the frozen Metadata of the parents
+     */
+    public Single<List<Metadata>> listParentsMetadata(final DriveResource driveResource) {
+        return listParents(driveResource, Metadata::freeze);
+    }
 
-                for (Metadata m : buffer) {
-                    list.add(m.getDriveId());
-                }
 
-                buffer.release();
-                return list;
-            } else {
-                throw new RxDriveException(result.getStatus());
-            }
-        });
+    /**
+     * Sets the same parents to a collection of resources, running at most
+     * {@value #DEFAULT_MAX_CONCURRENCY} operations at a time and continuing after a failure
+     *
+     * @see #setParents(Collection, Set, int, boolean)
+     */
+    public Flowable<Outcome<DriveId>> setParents(final Collection<? extends DriveResource> driveResources,
+                                                 final Set<DriveId> parents) {
+        return setParents(driveResources, parents, DEFAULT_MAX_CONCURRENCY, false);
     }
 
+    /**
+     * Sets the same parents to a collection of resources, e.g. to move them to a folder
+     *
+     * @param driveResources the resources where to set the parents
+     * @param parents        a set of drive id that will be the parents of the resources
+     * @param maxConcurrency the maximum number of operations running at the same time
+     * @param failFast       true to stop at the first failure, false to run all the operations
+     * @return a Flowable with an Outcome for each resource
+     * @see #trash(Collection, int, boolean)
+     */
+    public Flowable<Outcome<DriveId>> setParents(final Collection<? extends DriveResource> driveResources,
+                                                 final Set<DriveId> parents,
+                                                 final int maxConcurrency,
+                                                 final boolean failFast) {
+        return batchAction(driveResources, maxConcurrency, failFast,
+                driveResource -> setParents(driveResource, parents));
+    }
 
     /**
      * Sets the parents of a resource
@@ -215,10 +492,12 @@ public class RxDrive {
      * @return true if the operation succeeds
      */
     public Completable setParents(final DriveResource driveResource, final Set<DriveId> parents) {
-        return Completable.fromAction(() -> {
-            Status status = driveResource.setParents(mClient, parents).await();
-            if (!status.isSuccess()) {
-                throw new RxDriveException(status);
+        Completable setParents = execute(OperationType.MUTATION,
+                () -> driveResource.setParents(mClient, parents)).toCompletable();
+        return invalidating(setParents, () -> {
+            invalidate(driveResource.getDriveId());
+            for (DriveId parent : parents) {
+                invalidate(parent);
             }
         });
     }
@@ -230,26 +509,29 @@ public class RxDrive {
      * @return
      */
     public Single<List<DriveId>> query(final Query query) {
-        return Single.fromCallable(() -> {
-            List<DriveId> list = new ArrayList<>();
-
-            DriveApi.MetadataBufferResult result = Drive.DriveApi
-                    .query(mClient, query)
-                    .await();
-
-            if (result.getStatus().isSuccess()) {
-                MetadataBuffer buffer = result.getMetadataBuffer();
+        return query(query, Metadata::getDriveId);
+    }
 
-                for (Metadata metadata : buffer) {
-                    list.add(metadata.getDriveId());
-                }
+    /**
+     * Executes a Query on Google Drive, projecting each result while the MetadataBuffer is read
+     *
+     * @param query      the query you want to submit
+     * @param projection the function that extracts the fields you need from each result
+     * @return an Observable with the list of the projected results
+     * @see #listChildren(DriveFolder, Function)
+     */
+    public <T> Single<List<T>> query(final Query query, final Function<Metadata, T> projection) {
+        return collectMetadata(() -> Drive.DriveApi.query(mClient, query), projection);
+    }
 
-                buffer.release();
-                return list;
-            } else {
-                throw new RxDriveException(result.getStatus());
-            }
-        });
+    /**
+     * Executes a Query on Google Drive and returns the Metadata of the results in a single call
+     *
+     * @param query the query you want to submit
+     * @return an Observable with the list of the frozen Metadata of the results
+     */
+    public Single<List<Metadata>> queryMetadata(final Query query) {
+        return query(query, Metadata::freeze);
     }
 
     /**
@@ -259,27 +541,226 @@ public class RxDrive {
      * @return an Observable with the list of the resources
      */
     public Single<List<DriveId>> queryChildren(final DriveFolder driveFolder, final Query query) {
-        return Single.fromCallable(() -> {
-            List<DriveId> list = new ArrayList<>();
-            DriveApi.MetadataBufferResult result = driveFolder
-                    .queryChildren(mClient, query)
-                    .await();
+        return queryChildren(driveFolder, query, Metadata::getDriveId);
+    }
 
-            if (result.getStatus().isSuccess()) {
-                MetadataBuffer buffer = result.getMetadataBuffer();
+    /**
+     * Lists resources of a folder matching a query, projecting each entry while the
+     * MetadataBuffer is read
+     *
+     * @param driveFolder the folder where to execute the query
+     * @param query       Drive query
+     * @param projection  the function that extracts the fields you need from each entry
+     * @return an Observable with the list of the projected resources
+     * @see #listChildren(DriveFolder, Function)
+     */
+    public <T> Single<List<T>> queryChildren(final DriveFolder driveFolder,
+                                             final Query query,
+                                             final Function<Metadata, T> projection) {
+        return collectMetadata(() -> driveFolder.queryChildren(mClient, query), projection);
+    }
+
+    /**
+     * Lists resources of a folder matching a query with their Metadata, read in a single call
+     *
+     * @param driveFolder the folder where to execute the query
+     * @param query       Drive query
+     * @return an Observable with the list of the frozen Metadata of the resources
+     */
+    public Single<List<Metadata>> queryChildrenMetadata(final DriveFolder driveFolder,
+                                                        final Query query) {
+        return queryChildren(driveFolder, query, Metadata::freeze);
+    }
 
+    private <T> Single<List<T>> collectMetadata(
+            final Callable<PendingResult<DriveApi.MetadataBufferResult>> request,
+            final Function<Metadata, T> projection) {
+        return execute(OperationType.QUERY, request).map(result -> {
+            MetadataBuffer buffer = result.getMetadataBuffer();
+            try {
+                List<T> list = new ArrayList<>(buffer.getCount());
                 for (Metadata metadata : buffer) {
-                    list.add(metadata.getDriveId());
+                    list.add(projection.apply(metadata));
                 }
-
-                buffer.release();
                 return list;
-            } else {
-                throw new RxDriveException(result.getStatus());
+            } finally {
+                buffer.release();
             }
         });
     }
 
+    /**
+     * Streams the children of a folder. Entries are emitted while the MetadataBuffer is read,
+     * following the downstream demand, and the buffer is released as soon as the Flowable
+     * completes or is cancelled.
+     *
+     * @param driveFolder the folder to list
+     * @return a Flowable with the frozen Metadata of each child
+     */
+    public Flowable<Metadata> streamChildren(final DriveFolder driveFolder) {
+        return streamMetadata(() -> driveFolder.listChildren(mClient));
+    }
+
+    /**
+     * Streams the parents of a Drive resource
+     *
+     * @param driveResource the resource whose parents will be listed
+     * @return a Flowable with the frozen Metadata of each parent
+     * @see #streamChildren(DriveFolder)
+     */
+    public Flowable<Metadata> streamParents(final DriveResource driveResource) {
+        return streamMetadata(() -> driveResource.listParents(mClient));
+    }
+
+    /**
+     * Streams the results of a Query executed on Google Drive
+     *
+     * @param query the query you want to submit
+     * @return a Flowable with the frozen Metadata of each matching resource
+     * @see #streamChildren(DriveFolder)
+     */
+    public Flowable<Metadata> streamQuery(final Query query) {
+        return streamMetadata(() -> Drive.DriveApi.query(mClient, query));
+    }
+
+    /**
+     * Streams the children of a folder matching a query
+     *
+     * @param driveFolder the folder where to execute the query
+     * @param query       Drive query
+     * @return a Flowable with the frozen Metadata of each matching child
+     * @see #streamChildren(DriveFolder)
+     */
+    public Flowable<Metadata> streamQueryChildren(final DriveFolder driveFolder, final Query query) {
+        return streamMetadata(() -> driveFolder.queryChildren(mClient, query));
+    }
+
+    /**
+     * Walks the whole tree of a folder breadth-first
+     *
+     * @param driveFolder the root of the tree
+     * @return a Flowable with an entry for each resource of the tree
+     * @see #walk(DriveFolder, WalkOptions)
+     */
+    public Flowable<WalkEntry> walk(DriveFolder driveFolder) {
+        return walk(driveFolder, WalkOptions.DEFAULT);
+    }
+
+    /**
+     * Walks the tree of a folder, listing several folders in parallel and emitting the entries
+     * as they are found. At most {@link WalkOptions.Builder#maxConcurrency(int)} folders are
+     * listed at the same time over the whole walk, whatever its order and depth. A folder with
+     * several parents in the tree is emitted and walked only the first time it is found, so
+     * that cycles do not make the walk endless.
+     *
+     * @param driveFolder the root of the tree, which is not emitted
+     * @param options     the order, depth limit, filter and parallelism of the walk
+     * @return a Flowable with an entry for each resource of the tree
+     */
+    public Flowable<WalkEntry> walk(final DriveFolder driveFolder, final WalkOptions options) {
+        return Flowable.defer(() -> {
+            Set<DriveId> visited = Collections.newSetFromMap(new ConcurrentHashMap<>());
+            visited.add(driveFolder.getDriveId());
+            WalkEntry root = new WalkEntry("", null, 0, null);
+            CallLimiter listings = new CallLimiter(options.getMaxConcurrency());
+            return options.isDepthFirst() ?
+                    walkDepthFirst(driveFolder, root, options, visited, listings) :
+                    walkBreadthFirst(
+                            Collections.singletonList(driveFolder),
+                            Collections.singletonList(root),
+                            options,
+                            visited,
+                            listings);
+        });
+    }
+
+    private Flowable<WalkEntry> walkBreadthFirst(final List<DriveFolder> folders,
+                                                 final List<WalkEntry> entries,
+                                                 final WalkOptions options,
+                                                 final Set<DriveId> visited,
+                                                 final CallLimiter listings) {
+        if (folders.isEmpty()) {
+            return Flowable.empty();
+        }
+        final List<DriveFolder> nextFolders = new ArrayList<>();
+        final List<WalkEntry> nextEntries = new ArrayList<>();
+        return Flowable.range(0, folders.size())
+                .flatMap(i -> walkChildren(
+                        folders.get(i),
+                        entries.get(i),
+                        options,
+                        visited,
+                        listings), options.getMaxConcurrency())
+                .doOnNext(entry -> {
+                    if (isWalkable(entry, options)) {
+                        synchronized (nextFolders) {
+                            nextFolders.add(entry.getMetadata().getDriveId().asDriveFolder());
+                            nextEntries.add(entry);
+                        }
+                    }
+                })
+                .concatWith(Flowable.defer(() ->
+                        walkBreadthFirst(nextFolders, nextEntries, options, visited, listings)));
+    }
+
+    private Flowable<WalkEntry> walkDepthFirst(final DriveFolder folder,
+                                               final WalkEntry entry,
+                                               final WalkOptions options,
+                                               final Set<DriveId> visited,
+                                               final CallLimiter listings) {
+        return walkChildren(folder, entry, options, visited, listings)
+                .concatMapEager(child -> isWalkable(child, options) ?
+                                Flowable.just(child).concatWith(walkDepthFirst(
+                                        child.getMetadata().getDriveId().asDriveFolder(),
+                                        child,
+                                        options,
+                                        visited,
+                                        listings)) :
+                                Flowable.just(child),
+                        options.getMaxConcurrency(),
+                        Flowable.bufferSize());
+    }
+
+    /**
+     * Lists the children of a folder accepted by the filter, skipping the folders already
+     * visited. The listing waits for a permit of the walk.
+     */
+    private Flowable<WalkEntry> walkChildren(final DriveFolder folder,
+                                             final WalkEntry entry,
+                                             final WalkOptions options,
+                                             final Set<DriveId> visited,
+                                             final CallLimiter listings) {
+        return streamMetadata(listings.limit(
+                execute(OperationType.QUERY, () -> folder.listChildren(mClient))))
+                .filter(metadata -> options.getFilter().test(metadata) &&
+                        (!metadata.isFolder() || visited.add(metadata.getDriveId())))
+                .map(metadata -> new WalkEntry(
+                        entry.childPath(metadata.getTitle()), metadata, entry.getDepth() + 1, entry));
+    }
+
+    private static boolean isWalkable(WalkEntry entry, WalkOptions options) {
+        return entry.getMetadata().isFolder() && entry.getDepth() < options.getMaxDepth();
+    }
+
+    private Flowable<Metadata> streamMetadata(
+            final Callable<PendingResult<DriveApi.MetadataBufferResult>> request) {
+        return streamMetadata(execute(OperationType.QUERY, request));
+    }
+
+    private Flowable<Metadata> streamMetadata(Single<DriveApi.MetadataBufferResult> listing) {
+        return listing.flatMapPublisher(result -> Flowable.generate(
+                () -> new MetadataCursor(result.getMetadataBuffer()),
+                (cursor, emitter) -> {
+                    if (cursor.hasNext()) {
+                        emitter.onNext(cursor.next());
+                    } else {
+                        cursor.release();
+                        emitter.onComplete();
+                    }
+                },
+                MetadataCursor::release));
+    }
+
     /**
      * Creates a file on Drive
      *
@@ -313,7 +794,27 @@ public class RxDrive {
      * @return an Observable with the new DriveId
      */
     public Single<DriveId> createFile(DriveFolder folder, File file, String title, String mimeType) {
-        return createFile(folder, Uri.fromFile(file), title, mimeType);
+        return createFile(folder, file, title, mimeType, null);
+    }
+
+    /**
+     * Creates a file on Drive, reporting the upload progress
+     *
+     * @param folder           the folder where to create the new file
+     * @param file             is the file that will be uploaded
+     * @param title            is the title that you want for the new file
+     * @param mimeType         is the mimeType of the file
+     * @param progressObserver the observer that listens for upload progress
+     * @return an Observable with the new DriveId
+     */
+    public Single<DriveId> createFile(DriveFolder folder,
+                                      File file,
+                                      String title,
+                                      String mimeType,
+                                      Observer<Progress> progressObserver) {
+        // The file is opened for each subscription, not when the Single is created
+        return Single.defer(() ->
+                createFile(folder, new FileInputStream(file), title, mimeType, progressObserver));
     }
 
     /**
@@ -349,16 +850,30 @@ public class RxDrive {
      * @return an Observable with the new DriveId
      */
     public Single<DriveId> createFile(DriveFolder folder, final Uri uri, String title, String mimeType) {
-        try {
-            return createFile(
-                    folder,
-                    getContentResolver()
-                            .openInputStream(uri),
-                    title,
-                    mimeType);
-        } catch (FileNotFoundException e) {
-            return Single.error(e);
-        }
+        return createFile(folder, uri, title, mimeType, null);
+    }
+
+    /**
+     * Creates a file on Drive, reporting the upload progress
+     *
+     * @param folder           the folder where to create the new file
+     * @param uri              is the Uri of a file that will be uploaded
+     * @param title            is the title that you want for the new file
+     * @param mimeType         is the mimeType of the file
+     * @param progressObserver the observer that listens for upload progress
+     * @return an Observable with the new DriveId
+     */
+    public Single<DriveId> createFile(DriveFolder folder,
+                                      final Uri uri,
+                                      String title,
+                                      String mimeType,
+                                      Observer<Progress> progressObserver) {
+        return Single.defer(() -> createFile(
+                folder,
+                openInputStream(uri),
+                title,
+                mimeType,
+                progressObserver));
     }
 
 
@@ -366,7 +881,7 @@ public class RxDrive {
      * Creates a file on Drive
      *
      * @param folder      the folder where to create the new file
-     * @param inputStream is the InputStream that will be uploaded
+     * @param inputStream is the InputStream that will be uploaded, closed once read
      * @return an Observable with the new DriveId
      */
     public Single<DriveId> createFile(DriveFolder folder, final InputStream inputStream) {
@@ -377,7 +892,7 @@ public class RxDrive {
      * Creates a file on Drive
      *
      * @param folder      the folder where to create the new file
-     * @param inputStream is the InputStream that will be uploaded
+     * @param inputStream is the InputStream that will be uploaded, closed once read
      * @param title       is the title that you want for the new file
      * @return an Observable with the new DriveId
      */
@@ -389,7 +904,7 @@ public class RxDrive {
      * Creates a file on Drive
      *
      * @param folder      the folder where to create the new file
-     * @param inputStream is the InputStream that will be uploaded
+     * @param inputStream is the InputStream that will be uploaded, closed once read
      * @param title       is the title that you want for the new file
      * @param mimeType    is the mimeType of the file
      * @return an Observable with the new DriveId
@@ -399,25 +914,95 @@ public class RxDrive {
             final InputStream inputStream,
             final String title,
             final String mimeType) {
+        return createFileWithOptions(folder, inputStream, title, mimeType, null, null);
+    }
 
-        return Single.fromCallable(() -> {
-            DriveContents driveContents = Drive.DriveApi.newDriveContents(mClient)
-                    .await()
-                    .getDriveContents();
-
-            IOUtils.copy(
-                    inputStream,
-                    driveContents.getOutputStream());
-
-            DriveFolder.DriveFileResult result = folder
-                    .createFile(
-                            mClient,
-                            new MetadataChangeSet.Builder()
-                                    .setTitle(title)
-                                    .setMimeType(mimeType)
-                                    .build(),
-                            driveContents)
-                    .await();
+    /**
+     * Creates a file on Drive, reporting the upload progress. The expected size is known only
+     * if the InputStream is backed by a file.
+     *
+     * @param folder           the folder where to create the new file
+     * @param inputStream      is the InputStream that will be uploaded, closed once read
+     * @param title            is the title that you want for the new file
+     * @param mimeType         is the mimeType of the file
+     * @param progressObserver the observer that listens for upload progress
+     * @return an Observable with the new DriveId
+     */
+    public Single<DriveId> createFile(
+            final DriveFolder folder,
+            final InputStream inputStream,
+            final String title,
+            final String mimeType,
+            final Observer<Progress> progressObserver) {
+        return createFileWithOptions(folder, inputStream, title, mimeType, progressObserver, null);
+    }
+
+    /**
+     * Creates a file on Drive and waits until its content is committed to the server.
+     * The notification of the completion is delivered by {@link RxDriveEventService}, which
+     * must be declared in the manifest of the app.
+     *
+     * @param folder           the folder where to create the new file
+     * @param inputStream      is the InputStream that will be uploaded, closed once read
+     * @param title            is the title that you want for the new file
+     * @param mimeType         is the mimeType of the file
+     * @param executionOptions the options of the upload. They are changed to request the
+     *                         completion notification with a tracking tag owned by RxDrive
+     * @return a Single with the CompletionEvent of the successful commit, or an
+     * {@link RxDriveException} if the commit fails on the server
+     */
+    public Single<CompletionEvent> createFile(final DriveFolder folder,
+                                              final InputStream inputStream,
+                                              final String title,
+                                              final String mimeType,
+                                              final ExecutionOptions.Builder executionOptions) {
+        return awaitCompletion(executionOptions, options ->
+                createFileWithOptions(folder, inputStream, title, mimeType, null, options));
+    }
+
+    private Single<DriveId> createFileWithOptions(
+            final DriveFolder folder,
+            final InputStream inputStream,
+            final String title,
+            final String mimeType,
+            @Nullable final Observer<Progress> progressObserver,
+            @Nullable final ExecutionOptions executionOptions) {
+        final AtomicBoolean claimed = new AtomicBoolean();
+        Single<DriveId> createFile = contentCall(() -> {
+            claim(claimed);
+            long copied;
+            DriveFolder.DriveFileResult result;
+            try {
+                DriveContents driveContents = acquire(Drive.DriveApi.newDriveContents(mClient).await());
+                boolean created = false;
+                try {
+                    long contentLength = IOUtils.remaining(inputStream);
+                    ProgressTracker tracker = track(progressObserver, contentLength);
+                    copied = IOUtils.copy(
+                            inputStream,
+                            driveContents.getOutputStream(),
+                            contentLength,
+                            tracker);
+
+                    MetadataChangeSet metadataChangeSet = new MetadataChangeSet.Builder()
+                            .setTitle(title)
+                            .setMimeType(mimeType)
+                            .build();
+                    // The contents are committed by createFile, even if it fails
+                    created = true;
+                    result = (executionOptions != null ?
+                            folder.createFile(mClient, metadataChangeSet, driveContents, executionOptions) :
+                            folder.createFile(mClient, metadataChangeSet, driveContents))
+                            .await();
+                    if (result.getStatus().isSuccess() && tracker != null) {
+                        tracker.onComplete(copied);
+                    }
+                } finally {
+                    release(driveContents, !created);
+                }
+            } finally {
+                inputStream.close();
+            }
 
             if (result.getStatus().isSuccess()) {
                 return result.getDriveFile().getDriveId();
@@ -425,6 +1010,8 @@ public class RxDrive {
                 throw new RxDriveException(result.getStatus());
             }
         });
+        return invalidating(closeUnlessClaimed(inputStream, claimed, createFile),
+                () -> invalidate(folder.getDriveId()));
     }
 
     /**
@@ -435,45 +1022,238 @@ public class RxDrive {
      * @return an Observable with the new DriveId
      */
     public Single<DriveFile> updateFileContent(final DriveFile driveFile, File file) {
-        return updateFileContent(driveFile, Uri.fromFile(file));
+        return updateFileContent(driveFile, file, null);
     }
 
     /**
-     * Updates a file on Drive
+     * Updates a file on Drive, reporting the upload progress
      *
-     * @param driveFile drive file
+     * @param driveFile        drive file
+     * @param file             the content to write
+     * @param progressObserver the observer that listens for upload progress
+     * @return an Observable with the DriveFile
+     */
+    public Single<DriveFile> updateFileContent(final DriveFile driveFile,
+                                               File file,
+                                               Observer<Progress> progressObserver) {
+        // The file is opened for each subscription, not when the Single is created
+        return Single.defer(() ->
+                updateFileContent(driveFile, new FileInputStream(file), progressObserver));
+    }
+
+    /**
+     * Updates a file on Drive
+     *
+     * @param driveFile drive file
      * @param uri       the content to write
      * @return an Observable with the new DriveId
      */
     public Single<DriveFile> updateFileContent(final DriveFile driveFile, Uri uri) {
-        try {
-            return updateFileContent(driveFile, getContentResolver().openInputStream(uri));
-        } catch (FileNotFoundException e) {
-            return Single.error(e);
-        }
+        return updateFileContent(driveFile, uri, null);
+    }
+
+    /**
+     * Updates a file on Drive, reporting the upload progress
+     *
+     * @param driveFile        drive file
+     * @param uri              the content to write
+     * @param progressObserver the observer that listens for upload progress
+     * @return an Observable with the DriveFile
+     */
+    public Single<DriveFile> updateFileContent(final DriveFile driveFile,
+                                               Uri uri,
+                                               Observer<Progress> progressObserver) {
+        return Single.defer(() -> updateFileContent(
+                driveFile,
+                openInputStream(uri),
+                progressObserver));
     }
 
     /**
      * Updates a file on Drive
      *
      * @param driveFile drive file
-     * @param content   the content to write
+     * @param content   the content to write, closed once read
      * @return an Observable with the DriveId
      */
     public Single<DriveFile> updateFileContent(final DriveFile driveFile, final InputStream content) {
-        return Single.fromCallable(() -> {
-            DriveApi.DriveContentsResult driveContentsResult = driveFile
-                    .open(mClient, DriveFile.MODE_WRITE_ONLY, null)
-                    .await();
-            DriveContents driveContents = driveContentsResult.getDriveContents();
-            IOUtils.copy(content, driveContents.getOutputStream());
-            Status status = driveContents.commit(mClient, null).await();
-            if (status.isSuccess()) {
-                return driveFile;
-            } else {
-                throw new RxDriveException(status);
+        return updateFileContentWithOptions(driveFile, content, null, null);
+    }
+
+    /**
+     * Updates a file on Drive, reporting the upload progress. The expected size is known only
+     * if the InputStream is backed by a file.
+     *
+     * @param driveFile        drive file
+     * @param content          the content to write, closed once read
+     * @param progressObserver the observer that listens for upload progress
+     * @return an Observable with the DriveFile
+     */
+    public Single<DriveFile> updateFileContent(final DriveFile driveFile,
+                                               final InputStream content,
+                                               final Observer<Progress> progressObserver) {
+        return updateFileContentWithOptions(driveFile, content, progressObserver, null);
+    }
+
+    /**
+     * Updates a file on Drive and waits until its content is committed to the server.
+     * The notification of the completion is delivered by {@link RxDriveEventService}, which
+     * must be declared in the manifest of the app.
+     *
+     * @param driveFile        drive file
+     * @param content          the content to write, closed once read
+     * @param executionOptions the options of the upload. They are changed to request the
+     *                         completion notification with a tracking tag owned by RxDrive
+     * @return a Single with the CompletionEvent of the successful commit, or an
+     * {@link RxDriveException} if the commit fails on the server
+     */
+    public Single<CompletionEvent> updateFileContent(final DriveFile driveFile,
+                                                     final InputStream content,
+                                                     final ExecutionOptions.Builder executionOptions) {
+        return awaitCompletion(executionOptions, options ->
+                updateFileContentWithOptions(driveFile, content, null, options));
+    }
+
+    private Single<DriveFile> updateFileContentWithOptions(
+            final DriveFile driveFile,
+            final InputStream content,
+            @Nullable final Observer<Progress> progressObserver,
+            @Nullable final ExecutionOptions executionOptions) {
+        final AtomicBoolean claimed = new AtomicBoolean();
+        Single<DriveFile> update = contentCall(() -> {
+            claim(claimed);
+            try {
+                DriveContents driveContents = acquire(driveFile
+                        .open(mClient, DriveFile.MODE_WRITE_ONLY, null)
+                        .await());
+                long contentLength = IOUtils.remaining(content);
+                ProgressTracker tracker = track(progressObserver, contentLength);
+                long copied;
+                try {
+                    copied = IOUtils.copy(content, driveContents.getOutputStream(), contentLength, tracker);
+                } catch (Exception e) {
+                    release(driveContents, true);
+                    throw e;
+                }
+                Status status = commit(driveContents, executionOptions);
+                if (status.isSuccess()) {
+                    if (tracker != null) {
+                        tracker.onComplete(copied);
+                    }
+                    return driveFile;
+                } else {
+                    throw new RxDriveException(status);
+                }
+            } finally {
+                content.close();
             }
         });
+        return invalidating(closeUnlessClaimed(content, claimed, update),
+                () -> invalidate(driveFile.getDriveId()));
+    }
+
+    private Single<CompletionEvent> awaitCompletion(
+            final ExecutionOptions.Builder executionOptions,
+            final Function<ExecutionOptions, Single<?>> upload) {
+        return Single.defer(() -> {
+            final String trackingTag = CompletionEvents.newTrackingTag();
+            Single<CompletionEvent> completion = CompletionEvents.register(trackingTag)
+                    .timeout(mCompletionTimeoutMillis, TimeUnit.MILLISECONDS, Single.error(
+                            new RxDriveException(new Status(
+                                    CommonStatusCodes.TIMEOUT,
+                                    "Timed out waiting for the commit to the server"))));
+            ExecutionOptions options = executionOptions
+                    .setNotifyOnCompletion(true)
+                    .setTrackingTag(trackingTag)
+                    .build();
+            return upload.apply(options)
+                    .flatMap(result -> completion)
+                    .doFinally(() -> CompletionEvents.unregister(trackingTag));
+        });
+    }
+
+    /**
+     * Uploads a local directory tree to a Drive folder, running at most
+     * {@value #DEFAULT_MAX_CONCURRENCY} transfers at a time
+     *
+     * @see #uploadDirectory(File, DriveFolder, int)
+     */
+    public Flowable<Progress> uploadDirectory(File directory, DriveFolder target) {
+        return uploadDirectory(directory, target, DEFAULT_MAX_CONCURRENCY);
+    }
+
+    /**
+     * Uploads a local directory tree to a Drive folder. Each subdirectory becomes a new folder,
+     * created before the files it contains, and the files are uploaded in parallel.
+     *
+     * @param directory      the directory to upload
+     * @param target         the folder where the content of directory is created
+     * @param maxConcurrency the maximum number of transfers running at the same time
+     * @return a Flowable with the Progress of the whole tree, which completes when all the
+     * files have been uploaded
+     */
+    public Flowable<Progress> uploadDirectory(File directory, DriveFolder target, int maxConcurrency) {
+        return new FolderMirror(this).upload(directory, target, maxConcurrency);
+    }
+
+    /**
+     * Downloads a Drive folder tree to a local directory, running at most
+     * {@value #DEFAULT_MAX_CONCURRENCY} transfers at a time
+     *
+     * @see #downloadFolder(DriveFolder, File, int)
+     */
+    public Flowable<Progress> downloadFolder(DriveFolder source, File directory) {
+        return downloadFolder(source, directory, DEFAULT_MAX_CONCURRENCY);
+    }
+
+    /**
+     * Downloads a Drive folder tree to a local directory. The tree is walked first, so that
+     * the local directories are created and the total size is known before the files are
+     * downloaded in parallel. Google Docs and the other files without binary content are
+     * skipped.
+     *
+     * @param source         the folder to download
+     * @param directory      the directory where the content of source is written
+     * @param maxConcurrency the maximum number of transfers running at the same time
+     * @return a Flowable with the Progress of the whole tree, which completes when all the
+     * files have been downloaded
+     */
+    public Flowable<Progress> downloadFolder(DriveFolder source, File directory, int maxConcurrency) {
+        return new FolderMirror(this).download(source, directory, maxConcurrency);
+    }
+
+    /**
+     * Syncs a local directory with a Drive folder, running at most
+     * {@value #DEFAULT_MAX_CONCURRENCY} transfers at a time
+     *
+     * @see #syncDirectory(File, DriveFolder, File, int)
+     */
+    public Flowable<SyncAction> syncDirectory(File directory, DriveFolder folder, File manifestFile) {
+        return syncDirectory(directory, folder, manifestFile, DEFAULT_MAX_CONCURRENCY);
+    }
+
+    /**
+     * Syncs a local directory with a Drive folder in both directions, transferring only the
+     * files that changed since the last sync. A manifest records the size, modification time
+     * and MD5 checksum of each file after every sync, and the changes are found comparing it
+     * with the local files and with the Metadata of the Drive files. New files are uploaded,
+     * changed files are updated with {@link #updateFileContent(DriveFile, InputStream)}
+     * instead of being created again, files changed on Drive are downloaded and files deleted
+     * locally are trashed. When both copies of a file changed, the local copy wins.
+     *
+     * @param directory      the local directory
+     * @param folder         the Drive folder
+     * @param manifestFile   the file where the manifest is stored between two syncs. It must
+     *                       be outside directory and must be used only for this pair.
+     * @param maxConcurrency the maximum number of transfers running at the same time
+     * @return a Flowable with the actions applied, which completes once the manifest has been
+     * saved
+     */
+    public Flowable<SyncAction> syncDirectory(File directory,
+                                              DriveFolder folder,
+                                              File manifestFile,
+                                              int maxConcurrency) {
+        return new DeltaSync(this, directory, folder, manifestFile, maxConcurrency).run();
     }
 
     /**
@@ -484,21 +1264,11 @@ public class RxDrive {
      * @return an observable with the new DriveFolder object
      */
     public Single<DriveFolder> createFolder(final DriveFolder folder, final String title) {
-        return Single.fromCallable(() -> {
-            MetadataChangeSet metadataChangeSet = new MetadataChangeSet.Builder()
-                    .setTitle(title)
-                    .build();
-            DriveFolder.DriveFolderResult result = folder.createFolder(
-                    mClient,
-                    metadataChangeSet)
-                    .await();
-            if (result.getStatus().isSuccess()) {
-                return result.getDriveFolder();
-            } else {
-                throw new RxDriveException(result.getStatus());
-            }
-        });
-
+        final MetadataChangeSet metadataChangeSet = new MetadataChangeSet.Builder()
+                .setTitle(title)
+                .build();
+        return execute(OperationType.MUTATION, () -> folder.createFolder(mClient, metadataChangeSet))
+                .map(DriveFolder.DriveFolderResult::getDriveFolder);
     }
 
     /**
@@ -508,14 +1278,92 @@ public class RxDrive {
      * @return an Observable with `true` if the resource is removed
      */
     public Completable delete(final DriveResource driveResource) {
-        return Completable.fromAction(() -> {
-            Status status = driveResource.delete(mClient).await();
-            if (!status.isSuccess()) {
-                throw new RxDriveException(status);
+        Completable delete = execute(OperationType.MUTATION, () -> driveResource.delete(mClient)).toCompletable();
+        return invalidating(delete, () -> {
+            invalidate(driveResource.getDriveId());
+            ContentCache contentCache = mContentCache;
+            if (contentCache != null) {
+                contentCache.remove(driveResource.getDriveId());
             }
         });
     }
 
+    /**
+     * Trashes a collection of resources, running at most {@value #DEFAULT_MAX_CONCURRENCY}
+     * operations at a time and continuing after a failure
+     *
+     * @see #trash(Collection, int, boolean)
+     */
+    public Flowable<Outcome<DriveId>> trash(final Collection<? extends DriveResource> driveResources) {
+        return trash(driveResources, DEFAULT_MAX_CONCURRENCY, false);
+    }
+
+    /**
+     * Trashes a collection of resources. The Outcomes are emitted in the order the operations
+     * complete, and can be summarized with {@link BatchSummary#of(Flowable)}.
+     *
+     * @param driveResources the resources to put in the trash
+     * @param maxConcurrency the maximum number of operations running at the same time
+     * @param failFast       true to stop at the first failure, emitting its Outcome as the last
+     *                       one, false to run all the operations
+     * @return a Flowable with an Outcome for each resource
+     */
+    public Flowable<Outcome<DriveId>> trash(final Collection<? extends DriveResource> driveResources,
+                                            final int maxConcurrency,
+                                            final boolean failFast) {
+        return batchAction(driveResources, maxConcurrency, failFast, this::trash);
+    }
+
+    /**
+     * Untrashes a collection of resources, running at most {@value #DEFAULT_MAX_CONCURRENCY}
+     * operations at a time and continuing after a failure
+     *
+     * @see #trash(Collection, int, boolean)
+     */
+    public Flowable<Outcome<DriveId>> untrash(final Collection<? extends DriveResource> driveResources) {
+        return untrash(driveResources, DEFAULT_MAX_CONCURRENCY, false);
+    }
+
+    /**
+     * Untrashes a collection of resources
+     *
+     * @param driveResources the resources to remove from the trash
+     * @param maxConcurrency the maximum number of operations running at the same time
+     * @param failFast       true to stop at the first failure, false to run all the operations
+     * @return a Flowable with an Outcome for each resource
+     * @see #trash(Collection, int, boolean)
+     */
+    public Flowable<Outcome<DriveId>> untrash(final Collection<? extends DriveResource> driveResources,
+                                              final int maxConcurrency,
+                                              final boolean failFast) {
+        return batchAction(driveResources, maxConcurrency, failFast, this::untrash);
+    }
+
+    /**
+     * Removes a collection of resources from Drive, running at most
+     * {@value #DEFAULT_MAX_CONCURRENCY} operations at a time and continuing after a failure
+     *
+     * @see #trash(Collection, int, boolean)
+     */
+    public Flowable<Outcome<DriveId>> delete(final Collection<? extends DriveResource> driveResources) {
+        return delete(driveResources, DEFAULT_MAX_CONCURRENCY, false);
+    }
+
+    /**
+     * Removes a collection of resources from Drive
+     *
+     * @param driveResources the resources that will be removed from Drive
+     * @param maxConcurrency the maximum number of operations running at the same time
+     * @param failFast       true to stop at the first failure, false to run all the operations
+     * @return a Flowable with an Outcome for each resource
+     * @see #trash(Collection, int, boolean)
+     */
+    public Flowable<Outcome<DriveId>> delete(final Collection<? extends DriveResource> driveResources,
+                                             final int maxConcurrency,
+                                             final boolean failFast) {
+        return batchAction(driveResources, maxConcurrency, failFast, this::delete);
+    }
+
     /**
      * Trashes a resource
      *
@@ -523,12 +1371,8 @@ public class RxDrive {
      * @return true if the operation succeeds
      */
     public Completable trash(final DriveResource driveResource) {
-        return Completable.fromAction(() -> {
-            Status status = driveResource.trash(mClient).await();
-            if (!status.isSuccess()) {
-                throw new RxDriveException(status);
-            }
-        });
+        Completable trash = execute(OperationType.MUTATION, () -> driveResource.trash(mClient)).toCompletable();
+        return invalidating(trash, () -> invalidate(driveResource.getDriveId()));
     }
 
     /**
@@ -538,12 +1382,32 @@ public class RxDrive {
      * @return true if the operation succeeds
      */
     public Completable untrash(final DriveResource driveResource) {
-        return Completable.fromAction(() -> {
-            Status status = driveResource.untrash(mClient).await();
-            if (!status.isSuccess()) {
-                throw new RxDriveException(status);
-            }
-        });
+        Completable untrash = execute(OperationType.MUTATION, () -> driveResource.untrash(mClient)).toCompletable();
+        return invalidating(untrash, () -> invalidate(driveResource.getDriveId()));
+    }
+
+    /**
+     * Observes the changes of a Drive resource, either a file or a folder. The change listener
+     * is registered when the Observable is subscribed and removed when it is disposed, so no
+     * thread is kept busy while waiting for changes. Each event also invalidates the cached
+     * Metadata of the changed resource.
+     *
+     * @param driveResource the resource to observe
+     * @return an Observable with the ChangeEvents of the resource, delivered on the main thread
+     */
+    public Observable<ChangeEvent> changes(final DriveResource driveResource) {
+        return awaitConnection().andThen(Observable.create(emitter -> {
+            ChangeListener listener = event -> {
+                invalidate(event.getDriveId());
+                emitter.onNext(event);
+            };
+            emitter.setCancellable(() -> driveResource.removeChangeListener(mClient, listener));
+            driveResource.addChangeListener(mClient, listener).setResultCallback(status -> {
+                if (!status.isSuccess()) {
+                    emitter.onError(new RxDriveException(status));
+                }
+            });
+        }));
     }
 
     /**
@@ -552,35 +1416,265 @@ public class RxDrive {
      * @return nothing
      */
     public Completable sync() {
-        return Completable.fromAction(() -> Drive.DriveApi.requestSync(mClient).await());
+        Completable request = execute(OperationType.MUTATION, () -> Drive.DriveApi.requestSync(mClient))
+                .toCompletable()
+                .onErrorComplete(throwable -> throwable instanceof RxDriveException);
+        // Only the status of the request is ignored, not the failures while waiting for the
+        // connection, which happen before the request is sent
+        return awaitConnection().andThen(request);
     }
 
     /**
-     * Returns the Metadata of a DriveResource
+     * Returns the Metadata of a DriveResource. Concurrent requests for the same resource share
+     * a single request.
      *
      * @param driveResource the resource you want the Metadata
      * @return the Metadata of the driveResource
      */
     public Single<Metadata> getMetadata(final DriveResource driveResource) {
-        return Single.fromCallable(() -> {
-            DriveResource.MetadataResult result = driveResource.getMetadata(mClient).await();
-            if (result.getStatus().isSuccess()) {
-                return result.getMetadata();
-            } else {
-                throw new RxDriveException(result.getStatus());
+        final DriveId driveId = driveResource.getDriveId();
+        final MetadataCache metadataCache = mMetadataCache;
+        Single<Metadata> fetch = execute(OperationType.METADATA, () -> driveResource.getMetadata(mClient))
+                .map(DriveResource.MetadataResult::getMetadata);
+        if (metadataCache == null) {
+            return mMetadataFlights.join(driveId, fetch);
+        }
+        // The generation is read when the request starts, so that a response that was already
+        // in flight when the resource changed is not cached
+        Single<Metadata> request = mMetadataFlights.join(driveId, Single.defer(() -> {
+            long generation = metadataCache.generation();
+            return fetch.doOnSuccess(metadata -> metadataCache.put(driveId, metadata, generation));
+        }));
+        return Single.defer(() -> {
+            Metadata cached = metadataCache.get(driveId);
+            return cached != null ? Single.just(cached) : request;
+        });
+    }
+
+    /**
+     * Returns the Metadata of a collection of DriveResources, running at most
+     * {@value #DEFAULT_MAX_CONCURRENCY} requests at a time
+     *
+     * @param driveResources the resources you want the Metadata
+     * @return a Flowable with an Outcome for each resource
+     * @see #getMetadata(Collection, int)
+     */
+    public Flowable<Outcome<Metadata>> getMetadata(
+            final Collection<? extends DriveResource> driveResources) {
+        return getMetadata(driveResources, DEFAULT_MAX_CONCURRENCY);
+    }
+
+    /**
+     * Returns the Metadata of a collection of DriveResources. The Outcomes are emitted in the
+     * order the requests complete, and a failing request does not stop the others: its error
+     * is reported in its Outcome.
+     *
+     * @param driveResources the resources you want the Metadata
+     * @param maxConcurrency the maximum number of requests running at the same time
+     * @return a Flowable with an Outcome for each resource
+     */
+    public Flowable<Outcome<Metadata>> getMetadata(
+            final Collection<? extends DriveResource> driveResources,
+            final int maxConcurrency) {
+        return batch(driveResources, maxConcurrency, false, this::getMetadata);
+    }
+
+    /**
+     * Runs an operation on each resource of a collection. In fail-fast mode the batch
+     * completes after the first failed Outcome, cancelling the operations still running.
+     * The operations are scheduled by themselves, so they run in parallel only if the
+     * schedulers are enabled.
+     */
+    private <T> Flowable<Outcome<T>> batch(final Collection<? extends DriveResource> driveResources,
+                                           final int maxConcurrency,
+                                           final boolean failFast,
+                                           final Function<DriveResource, Single<T>> operation) {
+        Flowable<Outcome<T>> outcomes = Flowable.fromIterable(driveResources)
+                .flatMapSingle(driveResource -> operation.apply(driveResource)
+                                .map(value -> Outcome.success(driveResource.getDriveId(), value))
+                                .onErrorReturn(throwable -> Outcome.failure(driveResource.getDriveId(), throwable)),
+                        false,
+                        maxConcurrency);
+        return failFast ? outcomes.takeUntil(outcome -> !outcome.isSuccess()) : outcomes;
+    }
+
+    private Flowable<Outcome<DriveId>> batchAction(final Collection<? extends DriveResource> driveResources,
+                                                   final int maxConcurrency,
+                                                   final boolean failFast,
+                                                   final Function<DriveResource, Completable> action) {
+        return batch(driveResources, maxConcurrency, failFast, driveResource ->
+                action.apply(driveResource).toSingleDefault(driveResource.getDriveId()));
+    }
+
+
+    /**
+     * Opens the contents of a file and passes them to block. When block returns, the contents
+     * are committed, unless they have been opened with {@link DriveFile#MODE_READ_ONLY};
+     * if block throws or the Single is disposed before block returns, the contents are
+     * discarded. A commit already started when the Single is disposed still completes.
+     * Either way the contents are never left open, so block must not let their streams escape.
+     * Write operations are not retried, as block may not be safe to run twice.
+     *
+     * @param driveId the file to open
+     * @param mode    one of {@link DriveFile#MODE_READ_ONLY}, {@link DriveFile#MODE_WRITE_ONLY}
+     *                and {@link DriveFile#MODE_READ_WRITE}
+     * @param block   the function using the contents, which must not return null
+     * @return a Single emitting the value returned by block, once the contents are committed
+     */
+    public <T> Single<T> using(final DriveId driveId,
+                               final int mode,
+                               final Function<DriveContents, T> block) {
+        Single<T> single = Single.create(emitter -> {
+            try {
+                DriveContents contents = acquire(driveId.asDriveFile()
+                        .open(mClient, mode, null)
+                        .await());
+                T value;
+                try {
+                    value = block.apply(contents);
+                } catch (Exception e) {
+                    release(contents, true);
+                    throw e;
+                }
+                if (mode == DriveFile.MODE_READ_ONLY || emitter.isDisposed()) {
+                    release(contents, true);
+                } else {
+                    Status status = commit(contents, null);
+                    if (!status.isSuccess()) {
+                        throw new RxDriveException(status);
+                    }
+                }
+                emitter.onSuccess(value);
+            } catch (Exception e) {
+                emitter.tryOnError(e);
             }
         });
+        return mode == DriveFile.MODE_READ_ONLY ?
+                contentCall(OperationType.DOWNLOAD, single) :
+                invalidating(contentCall(single), () -> invalidate(driveId));
     }
 
+    /**
+     * Opens a seekable channel on the content of a file, to read parts of it without copying
+     * the whole content. The channel must be closed to discard the DriveContents.
+     *
+     * @param driveId the file to open
+     * @return a Single emitting the channel
+     */
+    public Single<DriveChannel> openChannel(final DriveId driveId) {
+        return contentCall(OperationType.DOWNLOAD, closeOnDispose(() -> openChannelNow(driveId)));
+    }
 
     /**
-     * Open a driveId
+     * Reads a range of the content of a file. If a {@link BlockCache} is set, the blocks
+     * covering the range are cached, and the file is opened only if some of them are missing.
+     *
+     * @param driveId the file to read
+     * @param offset  the offset of the first byte
+     * @param length  the number of bytes to read
+     * @return a Single emitting the bytes read, fewer than length if the content ends before
+     */
+    public Single<byte[]> read(final DriveId driveId, final long offset, final int length) {
+        if (offset < 0 || length < 0) {
+            return Single.error(new IllegalArgumentException(
+                    "Invalid range: offset " + offset + ", length " + length));
+        }
+        final BlockCache blockCache = mBlockCache;
+        if (blockCache == null) {
+            return read(driveId, offset, length, null);
+        }
+        return getMetadata(driveId.asDriveResource())
+                .flatMap(metadata -> {
+                    final String revision = ContentCache.revisionOf(metadata);
+                    if (revision == null) {
+                        // The content is not uploaded yet, so it cannot be cached
+                        return read(driveId, offset, length, null);
+                    }
+                    final int available = (int) Math.max(0,
+                            Math.min(length, metadata.getFileSize() - offset));
+                    byte[] cached = blockCache.read(driveId, revision, offset, available, null);
+                    if (cached != null) {
+                        return Single.just(cached);
+                    }
+                    return read(driveId, offset, available, channel ->
+                            blockCache.read(driveId, revision, offset, available, channel));
+                });
+    }
+
+    private Single<byte[]> read(final DriveId driveId,
+                                final long offset,
+                                final int length,
+                                @Nullable final Function<DriveChannel, byte[]> reader) {
+        return contentCall(OperationType.DOWNLOAD, () -> {
+            DriveChannel channel = openChannelNow(driveId);
+            try {
+                return reader != null ? reader.apply(channel) : channel.read(offset, length);
+            } finally {
+                channel.close();
+            }
+        });
+    }
+
+    /**
+     * Streams the content of a file in chunks
+     *
+     * @see #openChunks(DriveId, int, Observer)
+     */
+    public Flowable<Chunk> openChunks(final DriveId driveId, final int chunkSize) {
+        return openChunks(driveId, chunkSize, null);
+    }
+
+    /**
+     * Streams the content of a file in chunks, read only when the subscriber requests them,
+     * so that it can be parsed, hashed or decoded with constant memory. Each chunk has its own
+     * buffer from a pool, so chunks can be buffered by asynchronous operators; call
+     * {@link Chunk#release()} once a chunk has been processed to let the next ones reuse its
+     * buffer. The DriveContents are discarded when the Flowable terminates or is cancelled.
+     *
+     * @param driveId          the file to open
+     * @param chunkSize        the maximum number of bytes of each chunk, capped at 256 KiB
+     * @param progressObserver the subscriber that listen for download progress, may be null
+     * @return a Flowable emitting the chunks; all of them are full except the last one
+     */
+    public Flowable<Chunk> openChunks(final DriveId driveId,
+                                           final int chunkSize,
+                                           @Nullable final Observer<Progress> progressObserver) {
+        if (chunkSize <= 0) {
+            return Flowable.error(new IllegalArgumentException("chunkSize must be positive"));
+        }
+        return onContentScheduler(OperationType.DOWNLOAD, Flowable.generate(
+                () -> {
+                    ProgressTracker tracker = track(progressObserver, -1);
+                    DriveContents contents = acquire(driveId.asDriveFile()
+                            .open(mClient, DriveFile.MODE_READ_ONLY, tracker)
+                            .await());
+                    if (tracker != null) {
+                        tracker.onComplete();
+                    }
+                    try {
+                        return new ContentChunks(contents, chunkSize);
+                    } catch (RuntimeException e) {
+                        release(contents, true);
+                        throw e;
+                    }
+                },
+                (ContentChunks chunks, Emitter<Chunk> emitter) -> {
+                    chunks.next(emitter);
+                    return chunks;
+                },
+                chunks -> release(chunks.getContents(), true)));
+    }
+
+    /**
+     * Open a driveId. Concurrent openings of the same file share the same DriveContents, and
+     * each subscriber reads them through its own InputStream. The contents are discarded once
+     * all the InputStreams have been closed.
      *
      * @param driveId the file to open
      * @return the InputStream of the content
      */
-    public Single<InputStream> open(DriveId driveId) {
-        return open(driveId, null);
+    public Single<InputStream> open(final DriveId driveId) {
+        return open(driveId, null, ProgressThrottle.DEFAULT);
     }
 
     /**
@@ -592,27 +1686,210 @@ public class RxDrive {
      */
     public Single<InputStream> open(final DriveId driveId,
                                     final Observer<Progress> progressObserver) {
-        return Single.fromCallable(() -> {
-            DriveApi.DriveContentsResult result = driveId.asDriveFile().open(
-                    mClient,
-                    DriveFile.MODE_READ_ONLY,
-                    (bytesDownloaded, bytesExpected) -> {
+        return open(driveId, progressObserver, ProgressThrottle.DEFAULT);
+    }
+
+    /**
+     * Open a driveId. Without a progressObserver, concurrent openings of the same file share
+     * the same DriveContents, as in {@link #open(DriveId)}.
+     *
+     * @param driveId          the file to open
+     * @param progressObserver the subscriber that listen for download progress, may be null
+     * @param throttle         defines how often the download progress is reported
+     * @return the InputStream of the content
+     */
+    public Single<InputStream> open(final DriveId driveId,
+                                    @Nullable final Observer<Progress> progressObserver,
+                                    final ProgressThrottle throttle) {
+        Single<InputStream> download = progressObserver == null ?
+                openShared(driveId) :
+                contentCall(OperationType.DOWNLOAD, closeOnDispose(() -> {
+                    ProgressTracker tracker = new ProgressTracker(progressObserver, -1, throttle);
+                    DriveContents contents = acquire(driveId.asDriveFile()
+                            .open(mClient, DriveFile.MODE_READ_ONLY, tracker)
+                            .await());
+                    tracker.onComplete();
+                    return new ContentsInputStream(contents.getInputStream(), () -> release(contents, true));
+                }));
+
+        final ContentCache contentCache = mContentCache;
+        if (contentCache == null) {
+            return download;
+        }
+        return getMetadata(driveId.asDriveResource())
+                .flatMap(metadata -> {
+                    InputStream cached = contentCache.get(driveId, metadata);
+                    if (cached != null) {
                         if (progressObserver != null) {
-                            Log.d("maccio", "onProgress: " + bytesDownloaded + " " + bytesExpected);
-                            progressObserver.onNext(
-                                    new Progress(bytesDownloaded, bytesExpected));
+                            ProgressTracker tracker = new ProgressTracker(
+                                    progressObserver, metadata.getFileSize(), throttle);
+                            tracker.onComplete(metadata.getFileSize());
                         }
-                    })
-                    .await();
+                        return Single.just(cached);
+                    }
+                    return download.map(inputStream -> contentCache.put(driveId, metadata, inputStream));
+                });
+    }
+
+    /**
+     * Downloads the content of a file to a local file
+     *
+     * @see #download(DriveId, File, Observer)
+     */
+    public Completable download(DriveId driveId, File file) {
+        return download(driveId, file, null);
+    }
+
+    /**
+     * Downloads the content of a file to a local file. The bytes are moved from the file
+     * descriptor of the DriveContents to the local file channel to channel, without passing
+     * through the Java heap, and the DriveContents are discarded afterwards. If the download
+     * fails, the local file is deleted.
+     *
+     * @param driveId          the file to download
+     * @param file             the local file where the content is written
+     * @param progressObserver the observer that listens for download progress, may be null
+     * @return a Completable that completes once the content has been written
+     */
+    public Completable download(final DriveId driveId,
+                                final File file,
+                                @Nullable final Observer<Progress> progressObserver) {
+        return downloadTo(driveId, () -> new FileOutputStream(file), true, progressObserver)
+                .doOnError(throwable -> {
+                    //noinspection ResultOfMethodCallIgnored
+                    file.delete();
+                });
+    }
+
+    /**
+     * Downloads the content of a file to a file descriptor
+     *
+     * @see #download(DriveId, ParcelFileDescriptor, Observer)
+     */
+    public Completable download(DriveId driveId, ParcelFileDescriptor destination) {
+        return download(driveId, destination, null);
+    }
+
+    /**
+     * Downloads the content of a file to a file descriptor, e.g. one opened by a
+     * ContentResolver. The bytes are moved channel to channel when destination is a file, and
+     * the DriveContents are discarded afterwards. The caller keeps the ownership of
+     * destination, which is not closed.
+     *
+     * @param driveId          the file to download
+     * @param destination      the file descriptor where the content is written
+     * @param progressObserver the observer that listens for download progress, may be null
+     * @return a Completable that completes once the content has been written
+     */
+    public Completable download(final DriveId driveId,
+                                final ParcelFileDescriptor destination,
+                                @Nullable final Observer<Progress> progressObserver) {
+        return downloadTo(driveId,
+                () -> new FileOutputStream(destination.getFileDescriptor()),
+                false,
+                progressObserver);
+    }
+
+    private Completable downloadTo(final DriveId driveId,
+                                   final Callable<FileOutputStream> destination,
+                                   final boolean closeDestination,
+                                   @Nullable final Observer<Progress> progressObserver) {
+        return contentCall(OperationType.DOWNLOAD, () -> {
+            ProgressTracker tracker = track(progressObserver, -1);
+            DriveContents contents = acquire(driveId.asDriveFile()
+                    .open(mClient, DriveFile.MODE_READ_ONLY, tracker)
+                    .await());
+            try {
+                // The descriptor is owned by the contents, which close it when discarded
+                FileInputStream inputStream = new FileInputStream(
+                        contents.getParcelFileDescriptor().getFileDescriptor());
+                FileOutputStream outputStream = destination.call();
+                try {
+                    long copied = IOUtils.copy(inputStream, outputStream);
+                    if (tracker != null) {
+                        tracker.onComplete(copied);
+                    }
+                    return copied;
+                } finally {
+                    if (closeDestination) {
+                        outputStream.close();
+                    } else {
+                        outputStream.flush();
+                    }
+                }
+            } finally {
+                release(contents, true);
+            }
+        }).toCompletable();
+    }
+
+    /**
+     * Open a driveId, reporting the download progress through the returned Flowable.
+     * The Flowable emits the progress while the content is downloaded, then passes the
+     * InputStream of the content to contentConsumer and completes when it returns. Cancelling
+     * the Flowable cancels the download; intermediate updates are dropped if the subscriber
+     * cannot keep up.
+     *
+     * @param driveId         the file to open
+     * @param throttle        defines how often the download progress is reported
+     * @param contentConsumer consumes the InputStream of the content once downloaded
+     * @return a Flowable with the download progress
+     */
+    public Flowable<Progress> open(final DriveId driveId,
+                                   final ProgressThrottle throttle,
+                                   final Consumer<InputStream> contentConsumer) {
+        final ContentCache contentCache = mContentCache;
+        if (contentCache == null) {
+            return downloadWithProgress(driveId, throttle, contentConsumer);
+        }
+        return getMetadata(driveId.asDriveResource())
+                .flatMapPublisher(metadata -> {
+                    InputStream cached = contentCache.get(driveId, metadata);
+                    if (cached != null) {
+                        return onContentScheduler(Flowable.<Progress>create(emitter -> {
+                            ProgressTracker tracker = new ProgressTracker(
+                                    emitter, metadata.getFileSize(), throttle);
+                            tracker.onProgress(metadata.getFileSize(), metadata.getFileSize());
+                            contentConsumer.accept(cached);
+                            tracker.onComplete();
+                        }, BackpressureStrategy.LATEST));
+                    }
+                    return downloadWithProgress(driveId, throttle, inputStream ->
+                            contentConsumer.accept(contentCache.put(driveId, metadata, inputStream)));
+                });
+    }
+
+    private Flowable<Progress> downloadWithProgress(final DriveId driveId,
+                                                    final ProgressThrottle throttle,
+                                                    final Consumer<InputStream> contentConsumer) {
+        return onContentScheduler(OperationType.DOWNLOAD, Flowable.<Progress>create(emitter -> {
+            FlowableEmitter<Progress> serializedEmitter = emitter.serialize();
+            ProgressTracker tracker = new ProgressTracker(serializedEmitter, -1, throttle);
+            PendingResult<DriveApi.DriveContentsResult> pendingResult = driveId.asDriveFile()
+                    .open(mClient, DriveFile.MODE_READ_ONLY, tracker);
+            emitter.setCancellable(pendingResult::cancel);
+
+            DriveApi.DriveContentsResult result = pendingResult.await();
+            if (emitter.isCancelled()) {
+                if (result.getStatus().isSuccess()) {
+                    result.getDriveContents().discard(mClient);
+                }
+                return;
+            }
             if (result.getStatus().isSuccess()) {
-                if (progressObserver != null) {
-                    progressObserver.onComplete();
+                DriveContents contents = acquire(result);
+                InputStream inputStream = new ContentsInputStream(
+                        contents.getInputStream(), () -> release(contents, true));
+                try {
+                    contentConsumer.accept(inputStream);
+                } finally {
+                    inputStream.close();
                 }
-                return result.getDriveContents().getInputStream();
+                tracker.onComplete();
             } else {
-                throw new RxDriveException(result.getStatus());
+                serializedEmitter.onError(new RxDriveException(result.getStatus()));
             }
-        });
+        }, BackpressureStrategy.LATEST));
     }
 
     /**
@@ -626,7 +1903,7 @@ public class RxDrive {
             try {
                 result.startResolutionForResult(activity, RESOLVE_CONNECTION_REQUEST_CODE);
             } catch (IntentSender.SendIntentException e) {
-                mConnectionStatePublishSubject.onNext(ConnectionState.unableToResolve(result));
+                mConnectionStateSubject.onNext(ConnectionState.unableToResolve(result));
             }
         } else {
             GoogleApiAvailability.getInstance()
@@ -655,6 +1932,306 @@ public class RxDrive {
         }
     }
 
+    /**
+     * Executes a call to Google Drive according to the current {@link ExecutionMode}
+     *
+     * @param request creates the PendingResult of the call
+     * @return a Single with the result of the call, or an RxDriveException if its status is not
+     * successful
+     */
+    private <R extends Result> Single<R> execute(OperationType type,
+                                                 final Callable<PendingResult<R>> request) {
+        if (mExecutionMode == ExecutionMode.CALLBACK) {
+            Single<R> single = Single.create(emitter -> {
+                final PendingResult<R> pendingResult = request.call();
+                final AtomicBoolean delivered = new AtomicBoolean();
+                emitter.setCancellable(() -> {
+                    if (!delivered.get()) {
+                        pendingResult.cancel();
+                    }
+                });
+                pendingResult.setResultCallback(result -> {
+                    delivered.set(true);
+                    if (result.getStatus().isSuccess()) {
+                        emitter.onSuccess(result);
+                    } else {
+                        release(result);
+                        emitter.onError(new RxDriveException(result.getStatus()));
+                    }
+                });
+            });
+            // Results are delivered on the main thread, they are processed on the metadata pool
+            return awaitConnection().andThen((mSchedulersEnabled ?
+                    single.observeOn(mMetadataScheduler.getScheduler()) :
+                    single).retryWhen(retry(type)));
+        }
+
+        Single<R> single = Single.fromCallable(() -> {
+            R result = request.call().await();
+            if (result.getStatus().isSuccess()) {
+                return result;
+            } else {
+                release(result);
+                throw new RxDriveException(result.getStatus());
+            }
+        });
+        return awaitConnection().andThen((mSchedulersEnabled ?
+                single.subscribeOn(mMetadataScheduler.getScheduler()) :
+                single).retryWhen(retry(type)));
+    }
+
+    private static void release(Result result) {
+        if (result instanceof Releasable) {
+            ((Releasable) result).release();
+        }
+    }
+
+    /**
+     * Runs a content call without retrying it, as uploads consume their InputStream
+     */
+    private <T> Single<T> contentCall(Callable<T> callable) {
+        return contentCall(Single.fromCallable(callable));
+    }
+
+    private <T> Single<T> contentCall(Single<T> single) {
+        return awaitConnection().andThen(mSchedulersEnabled ?
+                single.subscribeOn(mContentScheduler.getScheduler()) :
+                single);
+    }
+
+    private <T> Single<T> contentCall(OperationType type, Callable<T> callable) {
+        return contentCall(type, Single.fromCallable(callable));
+    }
+
+    private <T> Single<T> contentCall(OperationType type, Single<T> single) {
+        return awaitConnection().andThen((mSchedulersEnabled ?
+                single.subscribeOn(mContentScheduler.getScheduler()) :
+                single).retryWhen(retry(type)));
+    }
+
+    /**
+     * Claims an InputStream supplied by the caller, which is then closed by the call
+     *
+     * @throws IOException if the stream has already been closed or read by another subscription
+     */
+    private static void claim(AtomicBoolean claimed) throws IOException {
+        if (!claimed.compareAndSet(false, true)) {
+            throw new IOException("The InputStream has already been consumed");
+        }
+    }
+
+    /**
+     * Closes an InputStream supplied by the caller if the call fails or is disposed before
+     * claiming it, e.g. while waiting for the connection. Once claimed, the call closes it.
+     */
+    private static <T> Single<T> closeUnlessClaimed(final InputStream inputStream,
+                                                    final AtomicBoolean claimed,
+                                                    Single<T> single) {
+        final Action close = () -> {
+            if (claimed.compareAndSet(false, true)) {
+                inputStream.close();
+            }
+        };
+        return single.doOnEvent((value, throwable) -> close.run()).doOnDispose(close);
+    }
+
+    /**
+     * Runs callable and emits its result, or closes it if the subscriber has been disposed in
+     * the meantime, so that contents opened for nobody are not leaked
+     */
+    private static <T extends Closeable> Single<T> closeOnDispose(final Callable<T> callable) {
+        return Single.create(emitter -> {
+            T value;
+            try {
+                value = callable.call();
+            } catch (Exception e) {
+                emitter.tryOnError(e);
+                return;
+            }
+            AtomicBoolean taken = new AtomicBoolean();
+            emitter.setCancellable(() -> {
+                if (taken.compareAndSet(false, true)) {
+                    value.close();
+                }
+            });
+            if (taken.compareAndSet(false, true)) {
+                emitter.onSuccess(value);
+            }
+        });
+    }
+
+    private <T> Flowable<T> onContentScheduler(Flowable<T> flowable) {
+        return awaitConnection().andThen(mSchedulersEnabled ?
+                flowable.subscribeOn(mContentScheduler.getScheduler()) :
+                flowable);
+    }
+
+    private <T> Flowable<T> onContentScheduler(OperationType type, Flowable<T> flowable) {
+        return awaitConnection().andThen((mSchedulersEnabled ?
+                flowable.subscribeOn(mContentScheduler.getScheduler()) :
+                flowable).retryWhen(retry(type)));
+    }
+
+    /**
+     * Resubscribes to a failed call after a delay, as defined by the RetryPolicy of its type.
+     * The delay never blocks the thread of the failed call, which may be the main thread in
+     * {@link ExecutionMode#CALLBACK} mode. When the schedulers are disabled, the call is retried
+     * on an io thread, as it is after waiting for the connection.
+     */
+    private Function<Flowable<Throwable>, Publisher<?>> retry(final OperationType type) {
+        final RetryPolicy retryPolicy = mRetryPolicies.get(type);
+        final Scheduler scheduler = mSchedulersEnabled ? Schedulers.computation() : Schedulers.io();
+        return errors -> {
+            final AtomicInteger retries = new AtomicInteger();
+            return errors.flatMap(throwable -> {
+                int retry = retries.get();
+                if (!(throwable instanceof RxDriveException) ||
+                        !retryPolicy.shouldRetry(retry, ((RxDriveException) throwable).getStatus())) {
+                    return Flowable.error(throwable);
+                }
+                retries.incrementAndGet();
+                mRetryCounts.get(type).incrementAndGet();
+                return Flowable.timer(retryPolicy.delayMillis(retry), TimeUnit.MILLISECONDS, scheduler);
+            });
+        };
+    }
+
+    /**
+     * Completes immediately if GoogleApiClient is connected, otherwise queues the operation
+     * until the connection is established
+     *
+     * @see #setOperationQueue(int, long, TimeUnit)
+     */
+    private Completable awaitConnection() {
+        return Completable.defer(() -> {
+            if (mClient.isConnected()) {
+                return Completable.complete();
+            }
+            if (mQueuedOperations.incrementAndGet() > mMaxQueuedOperations) {
+                mQueuedOperations.decrementAndGet();
+                return Completable.error(new RxDriveException(new Status(
+                        CommonStatusCodes.API_NOT_CONNECTED,
+                        "Too many operations waiting for the connection")));
+            }
+            Completable connected = mConnectionStateSubject
+                    .filter(ConnectionState::isConnected)
+                    .firstOrError()
+                    .toCompletable()
+                    .timeout(mQueueTimeoutMillis, TimeUnit.MILLISECONDS, Completable.error(
+                            new RxDriveException(new Status(
+                                    CommonStatusCodes.TIMEOUT,
+                                    "Timed out waiting for the connection"))))
+                    .doFinally(mQueuedOperations::decrementAndGet);
+            // The connection is established on the main thread, where blocking calls must not run
+            return mSchedulersEnabled ? connected : connected.observeOn(Schedulers.io());
+        });
+    }
+
+    /**
+     * Runs invalidation before the result of a mutation is delivered, so that the calls chained
+     * on the result see the change, and when the mutation is disposed
+     */
+    private static <T> Single<T> invalidating(Single<T> single, Action invalidation) {
+        return single.doOnEvent((value, throwable) -> invalidation.run()).doOnDispose(invalidation);
+    }
+
+    private static Completable invalidating(Completable completable, Action invalidation) {
+        return completable.doOnEvent(throwable -> invalidation.run()).doOnDispose(invalidation);
+    }
+
+    private void invalidate(DriveId driveId) {
+        // Requests started before the change must not be joined by the later ones
+        mMetadataFlights.forget(driveId);
+        MetadataCache metadataCache = mMetadataCache;
+        if (metadataCache != null) {
+            metadataCache.invalidate(driveId);
+        }
+        BlockCache blockCache = mBlockCache;
+        if (blockCache != null) {
+            blockCache.invalidate(driveId);
+        }
+    }
+
+    @Nullable
+    private static ProgressTracker track(@Nullable Observer<Progress> progressObserver,
+                                         long bytesExpected) {
+        return progressObserver != null ?
+                new ProgressTracker(progressObserver, bytesExpected, ProgressThrottle.DEFAULT) :
+                null;
+    }
+
+    /**
+     * Counts the contents of a successful result as open, until they are released
+     *
+     * @see #getOpenContentsCount()
+     */
+    private DriveContents acquire(DriveApi.DriveContentsResult result) throws RxDriveException {
+        if (!result.getStatus().isSuccess()) {
+            throw new RxDriveException(result.getStatus());
+        }
+        mOpenContents.incrementAndGet();
+        return result.getDriveContents();
+    }
+
+    /**
+     * @param discard false if the contents have already been closed by a commit
+     */
+    private void release(DriveContents contents, boolean discard) {
+        try {
+            if (discard) {
+                contents.discard(mClient);
+            }
+        } finally {
+            mOpenContents.decrementAndGet();
+        }
+    }
+
+    /**
+     * Commits the contents, which are closed even if the commit fails
+     */
+    private Status commit(DriveContents contents, @Nullable ExecutionOptions executionOptions) {
+        try {
+            return (executionOptions != null ?
+                    contents.commit(mClient, null, executionOptions) :
+                    contents.commit(mClient, null))
+                    .await();
+        } finally {
+            release(contents, false);
+        }
+    }
+
+    private DriveChannel openChannelNow(DriveId driveId) throws RxDriveException {
+        DriveContents contents = acquire(driveId.asDriveFile()
+                .open(mClient, DriveFile.MODE_READ_ONLY, null)
+                .await());
+        return new DriveChannel(contents.getParcelFileDescriptor(), () -> release(contents, true));
+    }
+
+    /**
+     * Opens the contents of a file, joining the opening already in flight for the same file
+     */
+    private Single<InputStream> openShared(final DriveId driveId) {
+        return mOpenFlights.join(driveId,
+                contentCall(OperationType.DOWNLOAD, closeOnDispose(() -> {
+                    DriveContents contents = acquire(driveId.asDriveFile()
+                            .open(mClient, DriveFile.MODE_READ_ONLY, null)
+                            .await());
+                    return new SharedContents(contents, () -> release(contents, true));
+                })),
+                SharedContents::newInputStream);
+    }
+
+    /**
+     * Opens file Uris directly, so that their content is uploaded channel to channel by
+     * {@link IOUtils#copy(InputStream, OutputStream, long, IOUtils.Listener)}
+     */
+    private InputStream openInputStream(Uri uri) throws FileNotFoundException {
+        if (ContentResolver.SCHEME_FILE.equals(uri.getScheme())) {
+            return new FileInputStream(uri.getPath());
+        }
+        return getContentResolver().openInputStream(uri);
+    }
+
     private ContentResolver getContentResolver() {
         return getContext()
                 .getContentResolver();
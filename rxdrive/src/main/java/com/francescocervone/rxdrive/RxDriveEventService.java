@@ -0,0 +1,41 @@
+package com.francescocervone.rxdrive;
+
+import com.google.android.gms.drive.events.CompletionEvent;
+import com.google.android.gms.drive.events.DriveEventService;
+
+/**
+ * Receives the completion notifications of the uploads started by RxDrive. Apps that wait for
+ * the completion of their uploads must declare it in their manifest:
+ * <pre>{@code
+ * <service
+ *     android:name="com.francescocervone.rxdrive.RxDriveEventService"
+ *     android:exported="true">
+ *     <intent-filter>
+ *         <action android:name="com.google.android.gms.drive.events.HANDLE_EVENT" />
+ *     </intent-filter>
+ * </service>
+ * }</pre>
+ * Apps that already have their own DriveEventService should not declare this one, and
+ * forward their CompletionEvents to {@link #dispatch(CompletionEvent)} instead.
+ *
+ * @see RxDrive#createFile(com.google.android.gms.drive.DriveFolder, java.io.InputStream, String, String, com.google.android.gms.drive.ExecutionOptions.Builder)
+ * @see RxDrive#updateFileContent(com.google.android.gms.drive.DriveFile, java.io.InputStream, com.google.android.gms.drive.ExecutionOptions.Builder)
+ */
+public class RxDriveEventService extends DriveEventService {
+
+    @Override
+    public void onCompletion(CompletionEvent event) {
+        dispatch(event);
+    }
+
+    /**
+     * Delivers a CompletionEvent received by another DriveEventService to RxDrive. The events
+     * of the uploads started by RxDrive are dismissed, the others are left to the caller.
+     *
+     * @param event the event received by the service
+     * @return true if the event belongs to RxDrive and has been dismissed, false otherwise
+     */
+    public static boolean dispatch(CompletionEvent event) {
+        return CompletionEvents.dispatch(event);
+    }
+}
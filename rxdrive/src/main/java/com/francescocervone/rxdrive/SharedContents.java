@@ -0,0 +1,46 @@
+package com.francescocervone.rxdrive;
+
+import com.google.android.gms.drive.DriveContents;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DriveContents opened once and read by several subscribers. Each of them gets its own
+ * InputStream, with its own position, on the descriptor of the contents, which are discarded
+ * when the last stream and the initial reference have been closed.
+ */
+class SharedContents implements Closeable {
+    private final DriveContents mContents;
+    private final Runnable mDiscard;
+    private final AtomicInteger mReferences = new AtomicInteger(1);
+
+    /**
+     * @param discard discards the contents
+     */
+    SharedContents(DriveContents contents, Runnable discard) {
+        mContents = contents;
+        mDiscard = discard;
+    }
+
+    /**
+     * @return a new InputStream reading the contents from the beginning, which must be closed
+     */
+    InputStream newInputStream() {
+        mReferences.incrementAndGet();
+        return Channels.newInputStream(
+                new DriveChannel(mContents.getParcelFileDescriptor(), this::close));
+    }
+
+    /**
+     * Drops a reference, discarding the contents if it was the last one
+     */
+    @Override
+    public void close() {
+        if (mReferences.decrementAndGet() == 0) {
+            mDiscard.run();
+        }
+    }
+}
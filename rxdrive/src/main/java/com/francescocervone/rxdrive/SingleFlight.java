@@ -0,0 +1,147 @@
+package com.francescocervone.rxdrive;
+
+import android.support.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import io.reactivex.Single;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.subjects.AsyncSubject;
+
+/**
+ * Coalesces identical concurrent calls: the subscribers asking for the same key while a call
+ * is in flight share that call and its result, instead of starting a new one. The key is
+ * dropped as soon as the call completes, so later subscribers start a new call.
+ * The call is disposed when all its subscribers have been disposed.
+ */
+class SingleFlight<K, V> {
+    private final Map<K, Flight> mFlights = new HashMap<>();
+    @Nullable
+    private final Consumer<V> mRelease;
+
+    private final class Flight {
+        final K mKey;
+        final AsyncSubject<V> mSubject = AsyncSubject.create();
+        final CompositeDisposable mUpstream = new CompositeDisposable();
+        int mSubscribers;
+        boolean mDone;
+        V mValue;
+
+        Flight(K key) {
+            mKey = key;
+        }
+    }
+
+    SingleFlight() {
+        this(null);
+    }
+
+    /**
+     * @param release called with the result of a call once all its subscribers received it
+     */
+    SingleFlight(@Nullable Consumer<V> release) {
+        mRelease = release;
+    }
+
+    Single<V> join(K key, Single<V> call) {
+        return join(key, call, value -> value);
+    }
+
+    /**
+     * @param key   identifies the call
+     * @param call  the call started if no call with the same key is in flight
+     * @param share maps the shared result to the value of each subscriber, before the result
+     *              is released
+     */
+    <R> Single<R> join(final K key, final Single<V> call, final Function<V, R> share) {
+        return Single.defer(() -> {
+            final Flight flight;
+            final boolean start;
+            synchronized (mFlights) {
+                Flight current = mFlights.get(key);
+                start = current == null;
+                if (start) {
+                    current = new Flight(key);
+                    mFlights.put(key, current);
+                }
+                current.mSubscribers++;
+                flight = current;
+            }
+            if (start) {
+                flight.mUpstream.add(call.subscribe(
+                        value -> {
+                            if (finish(flight, value)) {
+                                flight.mSubject.onNext(value);
+                                flight.mSubject.onComplete();
+                            }
+                        },
+                        throwable -> {
+                            if (finish(flight, null)) {
+                                flight.mSubject.onError(throwable);
+                            }
+                        }));
+            }
+            return flight.mSubject.singleOrError()
+                    .map(share)
+                    .doFinally(() -> leave(flight));
+        });
+    }
+
+    /**
+     * Detaches the call in flight for a key, if any, so that later subscribers start a new call.
+     * The subscribers already waiting still receive its result.
+     */
+    void forget(K key) {
+        synchronized (mFlights) {
+            mFlights.remove(key);
+        }
+    }
+
+    /**
+     * @return false if all the subscribers left before the call completed
+     */
+    private boolean finish(Flight flight, @Nullable V value) throws Exception {
+        synchronized (mFlights) {
+            flight.mDone = true;
+            flight.mValue = value;
+            if (flight.mSubscribers > 0) {
+                remove(flight);
+                return true;
+            }
+        }
+        release(value);
+        return false;
+    }
+
+    private void leave(Flight flight) throws Exception {
+        V value;
+        synchronized (mFlights) {
+            if (--flight.mSubscribers > 0) {
+                return;
+            }
+            remove(flight);
+            if (!flight.mDone) {
+                flight.mUpstream.dispose();
+                return;
+            }
+            value = flight.mValue;
+            flight.mValue = null;
+        }
+        release(value);
+    }
+
+    private void remove(Flight flight) {
+        if (mFlights.get(flight.mKey) == flight) {
+            mFlights.remove(flight.mKey);
+        }
+    }
+
+    private void release(@Nullable V value) throws Exception {
+        if (value != null && mRelease != null) {
+            mRelease.accept(value);
+        }
+    }
+}
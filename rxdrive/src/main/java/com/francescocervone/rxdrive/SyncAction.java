@@ -0,0 +1,47 @@
+package com.francescocervone.rxdrive;
+
+/**
+ * A change applied by a delta sync to bring a file up to date
+ *
+ * @see RxDrive#syncDirectory(java.io.File, com.google.android.gms.drive.DriveFolder, java.io.File)
+ */
+public class SyncAction {
+
+    public enum Type {
+        /**
+         * A new local file has been created on Drive
+         */
+        UPLOAD,
+        /**
+         * A local file has changed, and the content of its Drive file has been updated
+         */
+        UPDATE,
+        /**
+         * A Drive file is new or has changed, and it has been written to the local file
+         */
+        DOWNLOAD,
+        /**
+         * A local file has been deleted, and its Drive file has been trashed
+         */
+        TRASH
+    }
+
+    private Type mType;
+    private String mPath;
+
+    SyncAction(Type type, String path) {
+        mType = type;
+        mPath = path;
+    }
+
+    public Type getType() {
+        return mType;
+    }
+
+    /**
+     * @return the path of the file, relative to the synced directory and folder
+     */
+    public String getPath() {
+        return mPath;
+    }
+}
@@ -0,0 +1,133 @@
+package com.francescocervone.rxdrive;
+
+import android.support.annotation.Nullable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The state of the files after the last delta sync, stored as a JSON file. For each path it
+ * records the size, the modification time and the MD5 checksum of the local file, and the
+ * modified date of the Drive file, as they were when the two copies were last in sync.
+ */
+class SyncManifest {
+    private static final String SIZE = "size";
+    private static final String MODIFIED = "modified";
+    private static final String MD5 = "md5";
+    private static final String REMOTE_MODIFIED = "remoteModified";
+
+    private final File mFile;
+    private final Map<String, Entry> mEntries = new ConcurrentHashMap<>();
+
+    static class Entry {
+        final long mSize;
+        final long mModified;
+        final String mMd5;
+        final long mRemoteModified;
+
+        Entry(long size, long modified, String md5, long remoteModified) {
+            mSize = size;
+            mModified = modified;
+            mMd5 = md5;
+            mRemoteModified = remoteModified;
+        }
+    }
+
+    SyncManifest(File file) {
+        mFile = file;
+    }
+
+    /**
+     * Reads the entries from the file, if it exists
+     */
+    void load() throws IOException {
+        mEntries.clear();
+        if (!mFile.exists()) {
+            return;
+        }
+        InputStream inputStream = new FileInputStream(mFile);
+        try {
+            JSONObject json = new JSONObject(new String(readFully(inputStream), "UTF-8"));
+            Iterator<String> paths = json.keys();
+            while (paths.hasNext()) {
+                String path = paths.next();
+                JSONObject entry = json.getJSONObject(path);
+                mEntries.put(path, new Entry(
+                        entry.getLong(SIZE),
+                        entry.getLong(MODIFIED),
+                        entry.getString(MD5),
+                        entry.getLong(REMOTE_MODIFIED)));
+            }
+        } catch (JSONException e) {
+            throw new IOException("Invalid manifest " + mFile, e);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Writes the entries to a temporary file, then replaces the manifest with it, so that an
+     * interrupted write does not corrupt the manifest
+     */
+    void save() throws IOException {
+        JSONObject json = new JSONObject();
+        try {
+            for (Map.Entry<String, Entry> entry : mEntries.entrySet()) {
+                Entry value = entry.getValue();
+                json.put(entry.getKey(), new JSONObject()
+                        .put(SIZE, value.mSize)
+                        .put(MODIFIED, value.mModified)
+                        .put(MD5, value.mMd5)
+                        .put(REMOTE_MODIFIED, value.mRemoteModified));
+            }
+        } catch (JSONException e) {
+            throw new IOException(e);
+        }
+        File temp = new File(mFile.getPath() + ".tmp");
+        OutputStream outputStream = new FileOutputStream(temp);
+        try {
+            outputStream.write(json.toString().getBytes("UTF-8"));
+        } finally {
+            outputStream.close();
+        }
+        if (!temp.renameTo(mFile)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            throw new IOException("Unable to write " + mFile);
+        }
+    }
+
+    @Nullable
+    Entry get(String path) {
+        return mEntries.get(path);
+    }
+
+    Iterable<String> paths() {
+        return mEntries.keySet();
+    }
+
+    void put(String path, Entry entry) {
+        mEntries.put(path, entry);
+    }
+
+    void remove(String path) {
+        mEntries.remove(path);
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        IOUtils.copy(inputStream, outputStream);
+        return outputStream.toByteArray();
+    }
+}
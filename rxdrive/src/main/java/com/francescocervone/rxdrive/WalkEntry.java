@@ -0,0 +1,60 @@
+package com.francescocervone.rxdrive;
+
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.drive.Metadata;
+
+/**
+ * A resource found while walking a folder tree
+ *
+ * @see RxDrive#walk(com.google.android.gms.drive.DriveFolder, WalkOptions)
+ */
+public class WalkEntry {
+    static final char SEPARATOR = '/';
+
+    private String mPath;
+    private Metadata mMetadata;
+    private int mDepth;
+    private WalkEntry mParent;
+
+    WalkEntry(String path, Metadata metadata, int depth, @Nullable WalkEntry parent) {
+        mPath = path;
+        mMetadata = metadata;
+        mDepth = depth;
+        mParent = parent;
+    }
+
+    /**
+     * @return the titles of the folders from the walked folder to the resource, and the title
+     * of the resource, separated by '/'
+     */
+    public String getPath() {
+        return mPath;
+    }
+
+    /**
+     * @return the frozen Metadata of the resource
+     */
+    public Metadata getMetadata() {
+        return mMetadata;
+    }
+
+    /**
+     * @return the depth of the resource, 1 for the children of the walked folder
+     */
+    public int getDepth() {
+        return mDepth;
+    }
+
+    /**
+     * @return the entry of the folder containing the resource, or null for the walked folder
+     */
+    @Nullable
+    WalkEntry getParent() {
+        return mParent;
+    }
+
+    String childPath(String title) {
+        return mPath.isEmpty() ? title : mPath + SEPARATOR + title;
+    }
+}
@@ -0,0 +1,102 @@
+package com.francescocervone.rxdrive;
+
+import com.google.android.gms.drive.Metadata;
+
+import io.reactivex.functions.Predicate;
+
+/**
+ * Defines how a folder tree is walked
+ *
+ * @see RxDrive#walk(com.google.android.gms.drive.DriveFolder, WalkOptions)
+ */
+public class WalkOptions {
+
+    /**
+     * Walks the whole tree breadth-first, listing up to 4 folders at a time
+     */
+    public static final WalkOptions DEFAULT = new Builder().build();
+
+    private boolean mDepthFirst;
+    private int mMaxDepth;
+    private Predicate<Metadata> mFilter;
+    private int mMaxConcurrency;
+
+    private WalkOptions(boolean depthFirst, int maxDepth, Predicate<Metadata> filter, int maxConcurrency) {
+        mDepthFirst = depthFirst;
+        mMaxDepth = maxDepth;
+        mFilter = filter;
+        mMaxConcurrency = maxConcurrency;
+    }
+
+    boolean isDepthFirst() {
+        return mDepthFirst;
+    }
+
+    int getMaxDepth() {
+        return mMaxDepth;
+    }
+
+    Predicate<Metadata> getFilter() {
+        return mFilter;
+    }
+
+    int getMaxConcurrency() {
+        return mMaxConcurrency;
+    }
+
+    public static class Builder {
+        private boolean mDepthFirst;
+        private int mMaxDepth = Integer.MAX_VALUE;
+        private Predicate<Metadata> mFilter = metadata -> true;
+        private int mMaxConcurrency = 4;
+
+        /**
+         * Emits the entries breadth-first: all the entries of a depth are emitted before the
+         * entries of the next depth. This is the default.
+         */
+        public Builder breadthFirst() {
+            mDepthFirst = false;
+            return this;
+        }
+
+        /**
+         * Emits the entries depth-first: each folder is followed by all its descendants.
+         * The subtrees are still listed in parallel, and their entries are emitted in order.
+         */
+        public Builder depthFirst() {
+            mDepthFirst = true;
+            return this;
+        }
+
+        /**
+         * @param maxDepth the maximum depth of the emitted entries, 1 to emit only the children
+         *                 of the walked folder
+         */
+        public Builder maxDepth(int maxDepth) {
+            mMaxDepth = maxDepth;
+            return this;
+        }
+
+        /**
+         * @param filter accepts the resources to emit. The folders it does not accept are not
+         *               walked either.
+         */
+        public Builder filter(Predicate<Metadata> filter) {
+            mFilter = filter;
+            return this;
+        }
+
+        /**
+         * @param maxConcurrency the maximum number of folders listed at the same time, over
+         *                       the whole walk
+         */
+        public Builder maxConcurrency(int maxConcurrency) {
+            mMaxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        public WalkOptions build() {
+            return new WalkOptions(mDepthFirst, mMaxDepth, mFilter, mMaxConcurrency);
+        }
+    }
+}
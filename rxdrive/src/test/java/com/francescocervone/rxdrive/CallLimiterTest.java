@@ -0,0 +1,76 @@
+package com.francescocervone.rxdrive;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.PublishSubject;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CallLimiterTest {
+    private final CallLimiter mLimiter = new CallLimiter(1);
+    private final PublishSubject<String> mRunning = PublishSubject.create();
+    private final PublishSubject<String> mWaiting = PublishSubject.create();
+
+    @Test
+    public void startsAWaitingCallWhenARunningOneSucceeds() {
+        TestObserver<String> running = mLimiter.limit(mRunning.firstOrError()).test();
+        TestObserver<String> waiting = mLimiter.limit(mWaiting.firstOrError()).test();
+        assertFalse(mWaiting.hasObservers());
+
+        mRunning.onNext("first");
+
+        running.assertResult("first");
+        assertTrue(mWaiting.hasObservers());
+        mWaiting.onNext("second");
+        waiting.assertResult("second");
+    }
+
+    @Test
+    public void releasesThePermitOnError() {
+        TestObserver<String> failed = mLimiter.limit(Single.<String>error(new IOException())).test();
+        TestObserver<String> next = mLimiter.limit(mWaiting.firstOrError()).test();
+
+        failed.assertError(IOException.class);
+        assertTrue(mWaiting.hasObservers());
+        mWaiting.onNext("next");
+        next.assertResult("next");
+    }
+
+    @Test
+    public void releasesThePermitOnDispose() {
+        TestObserver<String> running = mLimiter.limit(mRunning.firstOrError()).test();
+        TestObserver<String> waiting = mLimiter.limit(mWaiting.firstOrError()).test();
+
+        running.dispose();
+
+        assertFalse(mRunning.hasObservers());
+        assertTrue(mWaiting.hasObservers());
+        mWaiting.onNext("second");
+        waiting.assertResult("second");
+    }
+
+    @Test
+    public void skipsTheWaitingCallsThatHaveBeenDisposed() {
+        PublishSubject<String> last = PublishSubject.create();
+        TestObserver<String> running = mLimiter.limit(mRunning.firstOrError()).test();
+        TestObserver<String> disposed = mLimiter.limit(mWaiting.firstOrError()).test();
+        TestObserver<String> waiting = mLimiter.limit(last.firstOrError()).test();
+
+        disposed.dispose();
+        mRunning.onNext("first");
+
+        running.assertResult("first");
+        assertFalse(mWaiting.hasObservers());
+        assertTrue(last.hasObservers());
+        last.onNext("last");
+        waiting.assertResult("last");
+
+        // The permit is free again
+        mLimiter.limit(Single.just("again")).test().assertResult("again");
+    }
+}
@@ -0,0 +1,246 @@
+package com.francescocervone.rxdrive;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IOUtilsTest {
+    private static final int LENGTH = 100 * 1000;
+
+    private File mSource;
+    private File mTarget;
+    private byte[] mContent;
+    private final List<Long> mProgress = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        mContent = new byte[LENGTH];
+        new Random(7).nextBytes(mContent);
+        mSource = File.createTempFile("source", null);
+        mTarget = File.createTempFile("target", null);
+        OutputStream outputStream = new FileOutputStream(mSource);
+        try {
+            outputStream.write(mContent);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        //noinspection ResultOfMethodCallIgnored
+        mSource.delete();
+        //noinspection ResultOfMethodCallIgnored
+        mTarget.delete();
+    }
+
+    @Test
+    public void copiesThroughShortTransfers() throws IOException {
+        // Every transfer moves at most 1000 bytes
+        long copied = copy(new ShortTransferInputStream(mSource, 1000, Integer.MAX_VALUE));
+
+        assertEquals(LENGTH, copied);
+        assertArrayEquals(mContent, read(mTarget));
+        assertEquals(LENGTH / 1000, mProgress.size());
+        assertCumulative();
+    }
+
+    @Test
+    public void finishesThroughTheBufferWhenTransfersStop() throws IOException {
+        // Three transfers of 1000 bytes, then transferTo does not move any byte
+        long copied = copy(new ShortTransferInputStream(mSource, 1000, 3));
+
+        assertEquals(LENGTH, copied);
+        assertArrayEquals(mContent, read(mTarget));
+        assertEquals(3000L, (long) mProgress.get(2));
+        assertCumulative();
+    }
+
+    @Test
+    public void copiesStreamsThroughTheBuffer() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        long copied = IOUtils.copy(new ByteArrayInputStream(mContent), outputStream, -1, mProgress::add);
+
+        assertEquals(LENGTH, copied);
+        assertArrayEquals(mContent, outputStream.toByteArray());
+        assertCumulative();
+    }
+
+    private long copy(FileInputStream inputStream) throws IOException {
+        FileOutputStream outputStream = new FileOutputStream(mTarget);
+        try {
+            return IOUtils.copy(inputStream, outputStream, LENGTH, mProgress::add);
+        } finally {
+            inputStream.close();
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Checks that the listener was notified with growing totals, ending with the whole length
+     */
+    private void assertCumulative() {
+        long previous = 0;
+        for (long progress : mProgress) {
+            assertTrue(progress > previous);
+            previous = progress;
+        }
+        assertEquals(LENGTH, previous);
+    }
+
+    private static byte[] read(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            byte[] bytes = new byte[(int) randomAccessFile.length()];
+            randomAccessFile.readFully(bytes);
+            return bytes;
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * A file stream whose channel moves at most a given number of bytes with each transfer,
+     * and no byte after a given number of transfers
+     */
+    private static class ShortTransferInputStream extends FileInputStream {
+        private final FileChannel mChannel;
+
+        ShortTransferInputStream(File file, int maxBytes, int maxTransfers) throws FileNotFoundException {
+            super(file);
+            mChannel = new ShortTransferChannel(super.getChannel(), maxBytes, maxTransfers);
+        }
+
+        @Override
+        public FileChannel getChannel() {
+            return mChannel;
+        }
+    }
+
+    private static class ShortTransferChannel extends FileChannel {
+        private final FileChannel mChannel;
+        private final int mMaxBytes;
+        private int mTransfers;
+
+        ShortTransferChannel(FileChannel channel, int maxBytes, int maxTransfers) {
+            mChannel = channel;
+            mMaxBytes = maxBytes;
+            mTransfers = maxTransfers;
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            if (mTransfers == 0) {
+                return 0;
+            }
+            mTransfers--;
+            return mChannel.transferTo(position, Math.min(count, mMaxBytes), target);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return mChannel.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return mChannel.read(dsts, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return mChannel.write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return mChannel.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return mChannel.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            mChannel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return mChannel.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            mChannel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            mChannel.force(metaData);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return mChannel.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return mChannel.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return mChannel.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return mChannel.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return mChannel.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return mChannel.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            mChannel.close();
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.francescocervone.rxdrive;
+
+import com.google.android.gms.common.api.CommonStatusCodes;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import io.reactivex.schedulers.Schedulers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs the uploader against a local server implementing the resumable upload protocol
+ */
+public class ResumableUploaderTest {
+    private static final int LENGTH = 2 * ResumableUploader.CHUNK_GRANULARITY + 1000;
+    private static final String RESOURCE_ID = "resource-id";
+
+    private DriveServer mDrive;
+    private File mDirectory;
+    private File mCheckpoints;
+    private File mFile;
+    private byte[] mContent;
+    private ResumableUploader mUploader;
+    private List<String> mInvalidatedTokens;
+    private List<String> mTokens;
+
+    @Before
+    public void setUp() throws Exception {
+        mDrive = new DriveServer();
+        mDrive.start();
+
+        mDirectory = File.createTempFile("uploader", null);
+        assertTrue(mDirectory.delete() && mDirectory.mkdirs());
+        mCheckpoints = new File(mDirectory, "checkpoints");
+        mContent = new byte[LENGTH];
+        new Random(42).nextBytes(mContent);
+        mFile = new File(mDirectory, "content.bin");
+        OutputStream outputStream = new FileOutputStream(mFile);
+        try {
+            outputStream.write(mContent);
+        } finally {
+            outputStream.close();
+        }
+
+        mTokens = new ArrayList<>(Collections.singletonList(DriveServer.VALID_TOKEN));
+        mInvalidatedTokens = new ArrayList<>();
+        mUploader = new ResumableUploader(
+                () -> mTokens.size() > 1 ? mTokens.remove(0) : mTokens.get(0),
+                mCheckpoints);
+        mUploader.setAccessTokenInvalidator(mInvalidatedTokens::add);
+        mUploader.setEndpoint(mDrive.url("/upload"));
+        mUploader.setChunkSize(ResumableUploader.CHUNK_GRANULARITY);
+        mUploader.setScheduler(Schedulers.trampoline());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mDrive.stop();
+        delete(mDirectory);
+    }
+
+    @Test
+    public void resumesFromTheLastConfirmedOffset() throws Exception {
+        // The second chunk is lost after the server confirmed the first one with a 308
+        mDrive.mFailingChunk = 1;
+        try {
+            upload();
+            fail("The upload should have been interrupted");
+        } catch (RxDriveException e) {
+            assertEquals(CommonStatusCodes.NETWORK_ERROR, e.getStatus().getStatusCode());
+        }
+        assertEquals(1, checkpointCount());
+        assertEquals(ResumableUploader.CHUNK_GRANULARITY, mDrive.mReceived.size());
+
+        assertEquals(RESOURCE_ID, upload());
+
+        assertEquals(1, mDrive.mSessions);
+        assertArrayEquals(mContent, mDrive.mReceived.toByteArray());
+        assertTrue(mDrive.mContentRanges.contains("bytes */" + LENGTH));
+        assertEquals(0, mDrive.mQueryBodyLength);
+        assertEquals(0, checkpointCount());
+    }
+
+    @Test
+    public void startsOverAfterAPermanentFailure() throws Exception {
+        mDrive.mFailingChunk = 1;
+        try {
+            upload();
+            fail("The upload should have been interrupted");
+        } catch (RxDriveException expected) {
+            // The checkpoint is kept, the failure is transient
+        }
+        mDrive.mQueryCode = 403;
+        try {
+            upload();
+            fail("The status query should have been forbidden");
+        } catch (RxDriveException e) {
+            assertEquals(CommonStatusCodes.ERROR, e.getStatus().getStatusCode());
+        }
+        assertEquals(0, checkpointCount());
+
+        mDrive.mQueryCode = 308;
+        mDrive.mReceived.reset();
+        assertEquals(RESOURCE_ID, upload());
+        assertEquals(2, mDrive.mSessions);
+        assertArrayEquals(mContent, mDrive.mReceived.toByteArray());
+    }
+
+    @Test
+    public void failsWhenTheServerStopsConfirmingChunks() throws Exception {
+        mDrive.mStalled = true;
+        try {
+            upload();
+            fail("The upload should have failed");
+        } catch (RxDriveException e) {
+            assertEquals(CommonStatusCodes.NETWORK_ERROR, e.getStatus().getStatusCode());
+        }
+        assertEquals(3, mDrive.mContentRanges.size());
+        assertEquals(1, checkpointCount());
+
+        mDrive.mStalled = false;
+        assertEquals(RESOURCE_ID, upload());
+        assertArrayEquals(mContent, mDrive.mReceived.toByteArray());
+    }
+
+    @Test
+    public void refreshesARejectedToken() throws Exception {
+        mTokens.add(0, "expired");
+
+        assertEquals(RESOURCE_ID, upload());
+
+        assertEquals(Collections.singletonList("expired"), mInvalidatedTokens);
+        assertArrayEquals(mContent, mDrive.mReceived.toByteArray());
+    }
+
+    private String upload() {
+        return mUploader.upload(mFile, "content.bin", "application/octet-stream", null, null)
+                .blockingGet();
+    }
+
+    private int checkpointCount() {
+        String[] names = mCheckpoints.list();
+        return names != null ? names.length : 0;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    /**
+     * A stand-in for the resumable upload endpoint, with a single file and scripted failures.
+     * It serves one request per connection, which is all HttpURLConnection needs here.
+     */
+    private static class DriveServer implements Runnable {
+        static final String VALID_TOKEN = "token";
+
+        final ByteArrayOutputStream mReceived = new ByteArrayOutputStream();
+        final List<String> mContentRanges = Collections.synchronizedList(new ArrayList<String>());
+        volatile int mSessions;
+        volatile int mFailingChunk = -1;
+        volatile boolean mStalled;
+        volatile int mQueryCode = 308;
+        volatile int mQueryBodyLength = -1;
+        private int mChunks;
+        private ServerSocket mServerSocket;
+
+        void start() throws IOException {
+            mServerSocket = new ServerSocket(0, 0, InetAddress.getByName("127.0.0.1"));
+            Thread thread = new Thread(this, "DriveServer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void stop() throws IOException {
+            mServerSocket.close();
+        }
+
+        String url(String path) {
+            return "http://127.0.0.1:" + mServerSocket.getLocalPort() + path;
+        }
+
+        @Override
+        public void run() {
+            while (!mServerSocket.isClosed()) {
+                try {
+                    Socket socket = mServerSocket.accept();
+                    try {
+                        serve(socket);
+                    } finally {
+                        socket.close();
+                    }
+                } catch (IOException e) {
+                    // The server was stopped or the client went away
+                }
+            }
+        }
+
+        private void serve(Socket socket) throws IOException {
+            DataInputStream inputStream = new DataInputStream(socket.getInputStream());
+            String method = readLine(inputStream).split(" ")[0];
+            Map<String, String> headers = new HashMap<>();
+            String line;
+            while (!(line = readLine(inputStream)).isEmpty()) {
+                int separator = line.indexOf(':');
+                headers.put(line.substring(0, separator).trim().toLowerCase(), line.substring(separator + 1).trim());
+            }
+            byte[] body = new byte[headers.containsKey("content-length") ?
+                    Integer.parseInt(headers.get("content-length")) : 0];
+            inputStream.readFully(body);
+            OutputStream outputStream = socket.getOutputStream();
+            synchronized (this) {
+                handle(outputStream, method, headers, body);
+            }
+            outputStream.flush();
+        }
+
+        private void handle(OutputStream outputStream,
+                            String method,
+                            Map<String, String> headers,
+                            byte[] body) throws IOException {
+            if (!("Bearer " + VALID_TOKEN).equals(headers.get("authorization"))) {
+                respond(outputStream, 401, null, null);
+            } else if ("POST".equals(method)) {
+                mSessions++;
+                respond(outputStream, 200, "Location: " + url("/session/" + mSessions), null);
+            } else {
+                String range = headers.get("content-range");
+                mContentRanges.add(range);
+                if (range.startsWith("bytes */")) {
+                    mQueryBodyLength = body.length;
+                    if (mQueryCode == 308) {
+                        confirm(outputStream);
+                    } else {
+                        respond(outputStream, mQueryCode, null,
+                                "{\"error\":{\"errors\":[{\"reason\":\"insufficientFilePermissions\"}]}}");
+                    }
+                } else if (mChunks++ == mFailingChunk) {
+                    respond(outputStream, 503, null, null);
+                } else if (mStalled) {
+                    confirm(outputStream);
+                } else if (Long.parseLong(range.substring("bytes ".length(), range.indexOf('-'))) != mReceived.size()) {
+                    respond(outputStream, 400, null, null);
+                } else {
+                    mReceived.write(body);
+                    if (mReceived.size() == LENGTH) {
+                        respond(outputStream, 200, null, "{\"id\":\"" + RESOURCE_ID + "\"}");
+                    } else {
+                        confirm(outputStream);
+                    }
+                }
+            }
+        }
+
+        private void confirm(OutputStream outputStream) throws IOException {
+            respond(outputStream, 308,
+                    mReceived.size() > 0 ? "Range: bytes=0-" + (mReceived.size() - 1) : null,
+                    null);
+        }
+
+        private static void respond(OutputStream outputStream,
+                                    int code,
+                                    String header,
+                                    String body) throws IOException {
+            byte[] bytes = body != null ? body.getBytes("UTF-8") : new byte[0];
+            StringBuilder response = new StringBuilder()
+                    .append("HTTP/1.1 ").append(code).append(" Status\r\n")
+                    .append("Connection: close\r\n")
+                    .append("Content-Length: ").append(bytes.length).append("\r\n");
+            if (header != null) {
+                response.append(header).append("\r\n");
+            }
+            response.append("\r\n");
+            outputStream.write(response.toString().getBytes("UTF-8"));
+            outputStream.write(bytes);
+        }
+
+        private static String readLine(DataInputStream inputStream) throws IOException {
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = inputStream.read()) != -1 && c != '\n') {
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+            }
+            return line.toString();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.francescocervone.rxdrive;
+
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.Status;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetryPolicyTest {
+    private final RetryPolicy mPolicy = RetryPolicy.exponential(5, 100, 1000, TimeUnit.MILLISECONDS);
+
+    @Test
+    public void doublesTheDelayUpToTheMaximum() {
+        assertDelayBetween(50, 100, 0);
+        assertDelayBetween(100, 200, 1);
+        assertDelayBetween(200, 400, 2);
+        assertDelayBetween(400, 800, 3);
+        assertDelayBetween(500, 1000, 4);
+        assertDelayBetween(500, 1000, 40);
+    }
+
+    @Test
+    public void neverWaitsWithoutDelay() {
+        assertEquals(0, RetryPolicy.none().delayMillis(0));
+    }
+
+    @Test
+    public void retriesOnlyTransientFailures() {
+        Status networkError = new Status(CommonStatusCodes.NETWORK_ERROR);
+        assertTrue(mPolicy.shouldRetry(4, networkError));
+        assertFalse(mPolicy.shouldRetry(5, networkError));
+        assertFalse(mPolicy.shouldRetry(0, new Status(CommonStatusCodes.DEVELOPER_ERROR)));
+        assertFalse(RetryPolicy.none().shouldRetry(0, networkError));
+    }
+
+    private void assertDelayBetween(long min, long max, int retry) {
+        for (int i = 0; i < 100; i++) {
+            long delay = mPolicy.delayMillis(retry);
+            assertTrue(delay + " for retry " + retry, delay >= min && delay <= max);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.francescocervone.rxdrive;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.PublishSubject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SingleFlightTest {
+    private final List<String> mReleased = Collections.synchronizedList(new ArrayList<String>());
+    private final SingleFlight<String, String> mFlights = new SingleFlight<>(mReleased::add);
+    private final PublishSubject<String> mSubject = PublishSubject.create();
+    private final AtomicInteger mCalls = new AtomicInteger();
+    private final AtomicBoolean mDisposed = new AtomicBoolean();
+    private final Single<String> mCall = mSubject.firstOrError()
+            .doOnSubscribe(disposable -> mCalls.incrementAndGet())
+            .doOnDispose(() -> mDisposed.set(true));
+
+    @Test
+    public void sharesTheCallInFlight() {
+        TestObserver<String> first = mFlights.join("key", mCall).test();
+        TestObserver<String> second = mFlights.join("key", mCall).test();
+
+        mSubject.onNext("value");
+
+        assertEquals(1, mCalls.get());
+        first.assertResult("value");
+        second.assertResult("value");
+        assertEquals(Collections.singletonList("value"), mReleased);
+
+        mFlights.join("key", mCall).test();
+        assertEquals(2, mCalls.get());
+    }
+
+    @Test
+    public void releasesTheValueAfterTheLastSubscriber() {
+        List<String> events = new ArrayList<>();
+        SingleFlight<String, String> flights = new SingleFlight<>(value -> events.add("release"));
+        flights.join("key", mCall, value -> events.add("share")).test();
+        flights.join("key", mCall, value -> events.add("share")).test();
+
+        mSubject.onNext("value");
+
+        assertEquals(Arrays.asList("share", "share", "release"), events);
+    }
+
+    @Test
+    public void disposesTheCallWhenAllTheSubscribersLeave() {
+        TestObserver<String> first = mFlights.join("key", mCall).test();
+        TestObserver<String> second = mFlights.join("key", mCall).test();
+
+        first.dispose();
+        assertFalse(mDisposed.get());
+        second.dispose();
+        assertTrue(mDisposed.get());
+
+        TestObserver<String> third = mFlights.join("key", mCall).test();
+        assertEquals(2, mCalls.get());
+        mSubject.onNext("value");
+        third.assertResult("value");
+    }
+
+    @Test
+    public void startsANewCallAfterForget() {
+        TestObserver<String> first = mFlights.join("key", mCall).test();
+        mFlights.forget("key");
+        PublishSubject<String> subject = PublishSubject.create();
+        TestObserver<String> second = mFlights.join("key", subject.firstOrError()).test();
+
+        mSubject.onNext("old");
+        subject.onNext("new");
+
+        first.assertResult("old");
+        second.assertResult("new");
+    }
+
+    @Test
+    public void releasesEachValueOnceWhileSubscribersJoinAndLeave() throws Exception {
+        final int threads = 8;
+        final int iterations = 500;
+        final AtomicInteger values = new AtomicInteger();
+        final Set<String> shared = Collections.synchronizedSet(new HashSet<String>());
+        final AtomicBoolean sharedAfterRelease = new AtomicBoolean();
+        final Single<String> call = Single.fromCallable(() -> "value" + values.incrementAndGet())
+                .subscribeOn(Schedulers.io());
+        final CountDownLatch done = new CountDownLatch(threads);
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+
+        for (int t = 0; t < threads; t++) {
+            final boolean leaving = t % 2 == 0;
+            new Thread(() -> {
+                try {
+                    for (int i = 0; i < iterations; i++) {
+                        Single<String> join = mFlights.join("key", call, value -> {
+                            if (mReleased.contains(value)) {
+                                sharedAfterRelease.set(true);
+                            }
+                            shared.add(value);
+                            return value;
+                        });
+                        if (leaving) {
+                            Disposable disposable = join.subscribe(value -> {
+                            }, errors::add);
+                            disposable.dispose();
+                        } else {
+                            join.blockingGet();
+                        }
+                    }
+                } catch (Throwable throwable) {
+                    errors.add(throwable);
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        // Lets the calls abandoned by the leaving subscribers finish
+        Thread.sleep(200);
+
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertFalse(sharedAfterRelease.get());
+        assertEquals(new HashSet<>(mReleased).size(), mReleased.size());
+        assertTrue(mReleased.containsAll(shared));
+    }
+}
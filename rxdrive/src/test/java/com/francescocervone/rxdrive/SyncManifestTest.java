@@ -0,0 +1,89 @@
+package com.francescocervone.rxdrive;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SyncManifestTest {
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("manifest", ".json");
+        //noinspection ResultOfMethodCallIgnored
+        mFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        //noinspection ResultOfMethodCallIgnored
+        mFile.delete();
+    }
+
+    @Test
+    public void loadsTheSavedEntries() throws IOException {
+        SyncManifest manifest = new SyncManifest(mFile);
+        manifest.put("a.txt", new SyncManifest.Entry(10, 1000, "md5-a", 2000));
+        manifest.put("folder/b.txt", new SyncManifest.Entry(20, 3000, "md5-b", 4000));
+        manifest.put("removed.txt", new SyncManifest.Entry(30, 5000, "md5-c", 6000));
+        manifest.remove("removed.txt");
+        manifest.save();
+
+        SyncManifest loaded = new SyncManifest(mFile);
+        loaded.load();
+
+        Set<String> paths = new HashSet<>();
+        for (String path : loaded.paths()) {
+            paths.add(path);
+        }
+        assertEquals(2, paths.size());
+        assertTrue(paths.contains("a.txt") && paths.contains("folder/b.txt"));
+        SyncManifest.Entry entry = loaded.get("folder/b.txt");
+        assertEquals(20, entry.mSize);
+        assertEquals(3000, entry.mModified);
+        assertEquals("md5-b", entry.mMd5);
+        assertEquals(4000, entry.mRemoteModified);
+        assertFalse(new File(mFile.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void startsEmptyWithoutAFile() throws IOException {
+        SyncManifest manifest = new SyncManifest(mFile);
+        manifest.put("a.txt", new SyncManifest.Entry(10, 1000, "md5-a", 2000));
+
+        manifest.load();
+
+        assertFalse(manifest.paths().iterator().hasNext());
+        assertNull(manifest.get("a.txt"));
+    }
+
+    @Test
+    public void rejectsAnInvalidFile() throws IOException {
+        OutputStream outputStream = new FileOutputStream(mFile);
+        try {
+            outputStream.write("{\"a.txt\": {\"size\": 10}}".getBytes("UTF-8"));
+        } finally {
+            outputStream.close();
+        }
+
+        try {
+            new SyncManifest(mFile).load();
+            fail("An incomplete entry should not be loaded");
+        } catch (IOException expected) {
+            // The manifest is left as it is, the caller decides what to do
+        }
+    }
+}